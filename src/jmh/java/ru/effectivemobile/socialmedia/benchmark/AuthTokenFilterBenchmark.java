@@ -0,0 +1,116 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
+import ru.effectivemobile.socialmedia.security.UserDetailsServiceImpl;
+import ru.effectivemobile.socialmedia.security.jwt.AuthTokenFilter;
+import ru.effectivemobile.socialmedia.security.jwt.JwtUtils;
+import ru.effectivemobile.socialmedia.security.jwt.TokenVersionRegistry;
+
+import java.security.Key;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request by its JWT.
+ * <ul>
+ *     <li>{@code legacyPath} replays the previous filter logic: the key is rebuilt and the token
+ *     is parsed twice (validation, then subject), then the user is loaded by the user service</li>
+ *     <li>{@code claimsPath} is the current logic: one parse with the cached key,
+ *     the principal is built from the claims</li>
+ *     <li>{@code filter} runs the whole {@link AuthTokenFilter} on a mock request</li>
+ * </ul>
+ * The user service is stubbed, so the numbers exclude the database round trip that
+ * the previous path paid on every request on top of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthTokenFilterBenchmark {
+    static final String SECRET =
+            "MegaLargeSigningSecretKeyForDemoApplicationMegaLargeSigningSecretKeyForDemoApplication";
+
+    private JwtUtils jwtUtils;
+    private AuthTokenFilter filter;
+    private StubUserDetailsService userDetailsService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = newJwtUtils();
+        UserDetailsImpl user = new UserDetailsImpl(42L, "benchmark-user", "user@example.com", "password",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        userDetailsService = new StubUserDetailsService(user);
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "versionCheck", true);
+    }
+
+    static JwtUtils newJwtUtils() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86_400_000);
+        ReflectionTestUtils.setField(jwtUtils, "tokenVersionRegistry", new TokenVersionRegistry());
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    @Benchmark
+    public UserDetails legacyPath() {
+        Key validationKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        Jwts.parserBuilder().setSigningKey(validationKey).build().parse(token);
+        Key subjectKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        String username = Jwts.parserBuilder().setSigningKey(subjectKey).build()
+                .parseClaimsJws(token).getBody().getSubject();
+        return userDetailsService.loadUserByUsername(username);
+    }
+
+    @Benchmark
+    public UserDetails claimsPath() {
+        return jwtUtils.getUserDetailsFromClaims(jwtUtils.parseJwtToken(token));
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/posts/benchmark-user");
+        request.addHeader("Authorization", "Bearer " + token);
+        FilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    static class StubUserDetailsService extends UserDetailsServiceImpl {
+        private final UserDetailsImpl user;
+
+        StubUserDetailsService(UserDetailsImpl user) {
+            super(null);
+            this.user = user;
+        }
+
+        @Override
+        public UserDetails loadUserByUsername(String username) {
+            return new UserDetailsImpl(user.getId(), username, user.getEmail(), user.getPassword(),
+                    user.getAuthorities());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.effectivemobile.socialmedia.model.Message;
+import ru.effectivemobile.socialmedia.model.Post;
+import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+import ru.effectivemobile.socialmedia.web.dto.UserDto;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of entities to DTOs and serialization of a page of 100 posts, as returned by
+ * the post and feed endpoints. Posts no longer inline the image bytes, so "with images"
+ * means every post carries an image URL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DtoBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private User user;
+    private Post post;
+    private Message message;
+    private List<PostDto> postsWithImages;
+    private List<PostDto> postsWithoutImages;
+
+    @Setup
+    public void setUp() {
+        user = new User("benchmark-user", "user@example.com", "password");
+        user.setId(42L);
+        User recipient = new User("recipient", "recipient@example.com", "password");
+        recipient.setId(43L);
+        post = newPost(1, "f1d2d2f924e986ac86fdf7b36c94bcdf32beec15f1d2d2f924e986ac86fdf7b3");
+        message = new Message();
+        message.setId(1L);
+        message.setSender(user);
+        message.setRecipient(recipient);
+        message.setText("Hello, how are you?");
+        postsWithImages = new ArrayList<>();
+        postsWithoutImages = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            postsWithImages.add(PostDto.build(newPost(i, String.format("%064x", i))));
+            postsWithoutImages.add(PostDto.build(newPost(i, null)));
+        }
+    }
+
+    private Post newPost(long id, String imageHash) {
+        Post result = new Post();
+        result.setId(id);
+        result.setUser(user);
+        result.setHeader("Post header " + id);
+        result.setText("The text of the post, long enough to look like a real one: lorem ipsum dolor sit amet, " +
+                "consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.");
+        result.setImageHash(imageHash);
+        result.setCreationTime(new Date(1_700_000_000_000L + id));
+        return result;
+    }
+
+    @Benchmark
+    public PostDto postDtoBuild() {
+        return PostDto.build(post);
+    }
+
+    @Benchmark
+    public MessageDto messageDtoBuild() {
+        return MessageDto.build(message);
+    }
+
+    @Benchmark
+    public UserDto userDtoBuild() {
+        return UserDto.build(user);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] serializePostsWithImages() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postsWithImages);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] serializePostsWithoutImages() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postsWithoutImages);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.effectivemobile.socialmedia.SocialMediaApplication;
+import ru.effectivemobile.socialmedia.model.Post;
+import ru.effectivemobile.socialmedia.repository.PostRepository;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page (20 posts by 20 authors) of the activity feed and of the posts of a user,
+ * read through the application context on in-memory H2.
+ * <ul>
+ *     <li>{@code entity*}: the previous read path: managed {@link Post} entities in a read-write
+ *     transaction, the author of every post loaded separately, then {@link PostDto#build}</li>
+ *     <li>{@code projection*}: the current read path: the constructor expression of the repositories
+ *     with a join for the author name, in a read-only transaction</li>
+ * </ul>
+ * Both run the JPQL through the entity manager, so the repository and service metrics are left out.
+ * Run with the GC profiler to see the heap allocated per page ({@code gc.alloc.rate.norm}):
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="FeedReadBenchmark -f 1 -wi 3 -i 5 -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeedReadBenchmark {
+    private static final int AUTHORS = 20;
+    private static final int POSTS_PER_AUTHOR = 50;
+    private static final int PAGE_SIZE = 20;
+    private static final long READER_ID = 1;
+
+    private static final String ENTITY_FEED = "select p from TimelineEntry t join t.post p " +
+            "where t.userId = :userId order by t.creationTime desc, t.postId desc";
+    private static final String ENTITY_POSTS = "select p from Post p where p.user.id = :userId order by p.id desc";
+    private static final String PROJECTION_FEED = PostRepository.SELECT_POST_DTO +
+            "from TimelineEntry t join t.post p join p.user u " +
+            "where t.userId = :userId order by t.creationTime desc, t.postId desc";
+    private static final String PROJECTION_POSTS = PostRepository.SELECT_POST_DTO +
+            "from Post p join p.user u where u.id = :userId order by p.id desc";
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SocialMediaApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:feed-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;" +
+                        "NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--app.query-stats.enabled=false",
+                "--app.storage.blob-dir=target/feed-benchmark/blobs",
+                "--logging.file.name=target/feed-benchmark/social-media.log",
+                "--logging.level.root=warn",
+                "--logging.level.ru.effectivemobile=warn");
+        seed(context.getBean(JdbcTemplate.class));
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> posts = new ArrayList<>();
+        List<Object[]> timeline = new ArrayList<>();
+        users.add(new Object[]{READER_ID, "reader", "reader@example.com", "password"});
+        long time = System.currentTimeMillis() - AUTHORS * POSTS_PER_AUTHOR * 1000L;
+        for (long author = 2; author < AUTHORS + 2; author++) {
+            users.add(new Object[]{author, "author" + author, "author" + author + "@example.com", "password"});
+        }
+        long postId = 1;
+        for (int n = 0; n < POSTS_PER_AUTHOR; n++) {
+            for (long author = 2; author < AUTHORS + 2; author++) {
+                Timestamp creationTime = new Timestamp(time += 1000);
+                posts.add(new Object[]{postId, author, "Post " + n, "Text of post " + n + " by author " + author,
+                        n % 2 == 0 ? null : String.format("%064x", postId), creationTime});
+                timeline.add(new Object[]{READER_ID, postId, author, creationTime});
+                postId++;
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user (id, username, email, password) VALUES (?, ?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("INSERT INTO post (id, user, header, text, image_hash, creation_time) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", posts);
+        jdbcTemplate.batchUpdate("INSERT INTO timeline (user_id, post_id, author_id, creation_time) " +
+                "VALUES (?, ?, ?, ?)", timeline);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PostDto> entityFeed() {
+        return readWrite.execute(status -> entityManager.createQuery(ENTITY_FEED, Post.class)
+                .setParameter("userId", READER_ID)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList()
+                .stream().map(PostDto::build).toList());
+    }
+
+    @Benchmark
+    public List<PostDto> projectionFeed() {
+        return readOnly.execute(status -> entityManager.createQuery(PROJECTION_FEED, PostDto.class)
+                .setParameter("userId", READER_ID)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<PostDto> entityPosts() {
+        return readWrite.execute(status -> entityManager.createQuery(ENTITY_POSTS, Post.class)
+                .setParameter("userId", 2L)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList()
+                .stream().map(PostDto::build).toList());
+    }
+
+    @Benchmark
+    public List<PostDto> projectionPosts() {
+        return readOnly.execute(status -> entityManager.createQuery(PROJECTION_POSTS, PostDto.class)
+                .setParameter("userId", 2L)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList());
+    }
+}
@@ -0,0 +1,112 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.effectivemobile.socialmedia.id.Snowflake;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk insert of messages as Hibernate issues it.
+ * <ul>
+ *     <li>{@code identity}: one statement per row, the generated key is read back after each one,
+ *     as with {@code GenerationType.IDENTITY}, which disables JDBC batching</li>
+ *     <li>{@code snowflakeBatch}: ids from {@link Snowflake} and JDBC batches of
+ *     {@code hibernate.jdbc.batch_size} rows</li>
+ *     <li>{@code nextId}: cost of generating one id</li>
+ * </ul>
+ * Runs on in-memory H2, so a statement costs no network round trip; on MySQL every statement
+ * of {@code identity} is a round trip, while {@code rewriteBatchedStatements} sends a whole
+ * batch as one multi-row INSERT, so the gap there is considerably larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InsertBenchmark {
+    private static final int ROWS = 1000;
+    private static final int BATCH_SIZE = 50;
+
+    private final Snowflake snowflake = new Snowflake(1);
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:insert-benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE message_identity (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "text VARCHAR(255), sender BIGINT, recipient BIGINT)");
+            statement.execute("CREATE TABLE message_snowflake (id BIGINT PRIMARY KEY, " +
+                    "text VARCHAR(255), sender BIGINT, recipient BIGINT)");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE message_identity");
+            statement.execute("TRUNCATE TABLE message_snowflake");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() throws SQLException {
+        long lastId = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO message_identity (text, sender, recipient) VALUES (?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                insert.setString(1, "message " + i);
+                insert.setLong(2, 1);
+                insert.setLong(3, 2);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    lastId = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long snowflakeBatch() throws SQLException {
+        long lastId = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO message_snowflake (id, text, sender, recipient) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                lastId = snowflake.nextId();
+                insert.setLong(1, lastId);
+                insert.setString(2, "message " + i);
+                insert.setLong(3, 1);
+                insert.setLong(4, 2);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    public long nextId() {
+        return snowflake.nextId();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edge lookups on a graph of {@code users} users and {@code edges} follow edges with
+ * power-law followee popularity. The setup prints the heap actually retained by the index
+ * next to its own {@code memoryBytes()} estimate, both normalized per million edges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SocialGraphIndexBenchmark {
+    @Param("100000")
+    private int users;
+
+    @Param("1000000")
+    private int edges;
+
+    private SocialGraphIndex index;
+    private long[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long before = usedHeap();
+        index = new SocialGraphIndex(new DriverManagerDataSource());
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < edges; i++) {
+            long follower = 1 + random.nextInt(users);
+            // Inverse power law: a few accounts receive most of the follows
+            long followee = 1 + (long) (users * Math.pow(random.nextDouble(), 3));
+            if (follower != followee) {
+                index.addFollow(follower, followee);
+            }
+        }
+        long retained = usedHeap() - before;
+        double millions = index.edgeCount() / 2 / 1_000_000.0;
+        System.out.printf("%nFollow edges: %d, measured heap: %.1f MB per million edges, " +
+                        "estimated: %.1f MB per million edges%n",
+                index.edgeCount() / 2, retained / millions / 1e6, index.memoryBytes() / millions / 1e6);
+
+        probes = new long[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = 1 + random.nextInt(users);
+        }
+    }
+
+    @Benchmark
+    public boolean follows() {
+        int i = next++ & (probes.length - 1);
+        return index.follows(probes[i], probes[(i + 1) & (probes.length - 1)]);
+    }
+
+    @Benchmark
+    public int followerCount() {
+        return index.followerCount(probes[next++ & (probes.length - 1)]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
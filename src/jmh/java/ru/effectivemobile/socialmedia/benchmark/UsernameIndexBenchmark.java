@@ -0,0 +1,88 @@
+package ru.effectivemobile.socialmedia.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.search.UsernameIndex;
+import ru.effectivemobile.socialmedia.web.dto.UserSuggestionDto;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead lookups of {@code limit} users by prefixes of {@code prefixLength} characters over
+ * {@code users} synthetic usernames with power-law follower counts. Sampled, so the report has the
+ * percentiles; the 1-character prefixes match a few percent of all users and go through the tree.
+ * The setup prints the heap actually retained by the index next to its own {@code memoryBytes()} estimate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsernameIndexBenchmark {
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz0123456789_";
+
+    @Param("1000000")
+    private int users;
+
+    @Param({"1", "2", "3", "5"})
+    private int prefixLength;
+
+    @Param("10")
+    private int limit;
+
+    private UsernameIndex index;
+    private String[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        SocialGraphIndex graph = new SocialGraphIndex(new DriverManagerDataSource());
+        for (int i = 0; i < users * 5; i++) {
+            long follower = 1 + random.nextInt(users);
+            // Inverse power law: a few accounts receive most of the follows
+            long followee = 1 + (long) (users * Math.pow(random.nextDouble(), 3));
+            if (follower != followee) {
+                graph.addFollow(follower, followee);
+            }
+        }
+        String[] names = new String[users];
+        for (int id = 1; id <= users; id++) {
+            StringBuilder name = new StringBuilder();
+            int length = 6 + random.nextInt(9);
+            for (int i = 0; i < length; i++) {
+                name.append(LETTERS.charAt(random.nextInt(i == 0 ? 26 : LETTERS.length())));
+            }
+            names[id - 1] = name.append(id).toString();
+        }
+        long before = usedHeap();
+        index = new UsernameIndex(new DriverManagerDataSource(), graph);
+        for (int id = 1; id <= users; id++) {
+            index.add(id, names[id - 1]);
+        }
+        index.merge();
+        long retained = usedHeap() - before;
+        System.out.printf("%nUsers: %d, measured heap: %.1f bytes per user, estimated: %.1f bytes per user%n",
+                index.size(), (double) retained / users, (double) index.memoryBytes() / users);
+
+        probes = new String[1024];
+        for (int i = 0; i < probes.length; i++) {
+            String name = names[random.nextInt(users)];
+            probes[i] = name.substring(0, Math.min(prefixLength, name.length()));
+        }
+    }
+
+    @Benchmark
+    public List<UserSuggestionDto> search() {
+        return index.search(probes[next++ & (probes.length - 1)], limit);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -2,8 +2,10 @@ package ru.effectivemobile.socialmedia;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// The R2DBC pool of the reactive API is not a bean: a ConnectionFactory bean would replace the JDBC DataSource
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class SocialMediaApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,65 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache: in-process Caffeine caches behind JCache, one per region.
+ * Every region is created here with its bound; a cached entity or collection without a region
+ * in this list fails the startup ({@code hibernate.javax.cache.missing_cache_strategy=fail}).
+ * <p>
+ * Hits and misses are exported by the Hibernate metrics: {@code hibernate.second.level.cache.requests}
+ * per region, {@code hibernate.cache.natural.id.requests} and {@code hibernate.cache.query.requests}.
+ */
+@Configuration
+public class HibernateCacheConfig {
+    public static final String USERS_REGION = "users";
+    public static final String USERNAMES_REGION = "usernames";
+    public static final String USER_ROLES_REGION = "user-roles";
+    public static final String ROLES_REGION = "roles";
+
+    private static final long ROLES_MAX_ENTRIES = 100;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${app.cache.users.max-entries}") long maxUsers,
+                                              @Value("${app.cache.queries.max-entries}") long maxQueries) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // A manager per application context, so that contexts in one JVM (tests) never share regions
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("hibernate:" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, USERS_REGION, maxUsers);
+        createRegion(cacheManager, USERNAMES_REGION, maxUsers);
+        createRegion(cacheManager, USER_ROLES_REGION, maxUsers);
+        createRegion(cacheManager, ROLES_REGION, ROLES_MAX_ENTRIES);
+        createRegion(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, maxQueries);
+        // Last update time of every table, checked by the cached queries: evicting it would serve stale results
+        createRegion(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, null);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, Long maxEntries) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // Hibernate caches immutable entries: copying them on every access would only cost time
+        configuration.setStoreByValue(false);
+        configuration.setMaximumSize(maxEntries == null ? OptionalLong.empty() : OptionalLong.of(maxEntries));
+        cacheManager.createCache(name, configuration);
+    }
+}
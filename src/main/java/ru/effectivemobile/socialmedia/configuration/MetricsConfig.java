@@ -0,0 +1,19 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables {@link io.micrometer.core.annotation.Timed} on the services.
+ * Endpoint timers ({@code http.server.requests}) and repository timers
+ * ({@code spring.data.repository.invocations}) are recorded by Spring Boot itself.
+ */
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
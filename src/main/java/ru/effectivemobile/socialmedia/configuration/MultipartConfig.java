@@ -0,0 +1,31 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Multipart limits of the image uploads, derived from the largest accepted image
+ * ({@code app.storage.max-image-size}): the file part may reach it, the whole request may exceed it
+ * by the form fields. The other {@code spring.servlet.multipart.*} settings apply as configured.
+ */
+@Configuration
+public class MultipartConfig {
+    // The header and text fields of the post and the headers of the parts
+    private static final DataSize FORM_FIELDS_SIZE = DataSize.ofMegabytes(1);
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties properties,
+                                                         @Value("${app.storage.max-image-size}") DataSize maxImageSize) {
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setLocation(properties.getLocation());
+        factory.setFileSizeThreshold(properties.getFileSizeThreshold());
+        factory.setMaxFileSize(maxImageSize);
+        factory.setMaxRequestSize(DataSize.ofBytes(maxImageSize.toBytes() + FORM_FIELDS_SIZE.toBytes()));
+        return factory.createMultipartConfig();
+    }
+}
@@ -0,0 +1,76 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import ru.effectivemobile.socialmedia.reactive.JwtHandlerFilter;
+import ru.effectivemobile.socialmedia.reactive.ReactiveApiServer;
+import ru.effectivemobile.socialmedia.reactive.ReactiveReadHandler;
+import ru.effectivemobile.socialmedia.reactive.ReactiveReadRepository;
+import ru.effectivemobile.socialmedia.security.jwt.JwtUtils;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking read API of the busiest listings, started in the {@code reactive} profile:
+ * WebFlux functional endpoints on a Reactor Netty server ({@code app.reactive.port}) reading through R2DBC,
+ * next to the servlet API that keeps serving everything else.
+ * <ul>
+ *     <li>{@code GET /api/reactive/posts/{username}}</li>
+ *     <li>{@code GET /api/reactive/posts/{username}/activityfeed}</li>
+ *     <li>{@code GET /api/reactive/messages/{username}/received}</li>
+ * </ul>
+ * All take the {@code after} cursor and {@code size} (up to {@code app.reactive.max-items})
+ * and authenticate by the same JWT as the servlet API.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveApiConfig {
+    @Bean
+    public ReactiveApiServer reactiveApiServer(JwtUtils jwtUtils, ObjectMapper objectMapper,
+                                               @Value("${app.reactive.port}") int port,
+                                               @Value("${app.reactive.r2dbc.url}") String url,
+                                               @Value("${app.reactive.r2dbc.username}") String username,
+                                               @Value("${app.reactive.r2dbc.password}") String password,
+                                               @Value("${app.reactive.r2dbc.max-connections}") int maxConnections,
+                                               @Value("${app.reactive.max-items}") int maxItems,
+                                               @Value("${app.reactive.prefetch}") int prefetch,
+                                               @Value("${app.jwtVersionCheck:true}") boolean versionCheck) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        ConnectionPool connectionPool = new ConnectionPool(
+                ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                        .maxSize(maxConnections)
+                        .maxAcquireTime(Duration.ofSeconds(5))
+                        .build());
+        ReactiveReadHandler handler = new ReactiveReadHandler(
+                new ReactiveReadRepository(DatabaseClient.create(connectionPool)), maxItems, prefetch);
+
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .path("/api/reactive", api -> api
+                        .GET("/posts/{username}", handler::posts)
+                        .GET("/posts/{username}/activityfeed", handler::activityFeed)
+                        .GET("/messages/{username}/received", handler::receivedMessages)
+                        .filter(new JwtHandlerFilter(jwtUtils, versionCheck)))
+                .build();
+        // The JSON of the servlet API, dates included
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper)))
+                .build();
+        return new ReactiveApiServer(RouterFunctions.toHttpHandler(routes, strategies), connectionPool, port);
+    }
+}
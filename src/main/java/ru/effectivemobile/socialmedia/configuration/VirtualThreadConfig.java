@@ -0,0 +1,52 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread mode ({@code app.threads.virtual=true}): every request and {@code @Async} task
+ * (timeline fan-out, message push) runs on its own virtual thread,
+ * so requests waiting on the database no longer hold one of the 200 Tomcat worker threads.
+ * The streamed lists keep the bounded pool of {@link WebAsyncConfig}, which limits the connections they hold.
+ * <p>
+ * The message streams are written by the platform writer threads of
+ * {@link ru.effectivemobile.socialmedia.service.MessageStreamService}: {@code ResponseBodyEmitter.send}
+ * is {@code synchronized} in Spring 6.0, so a virtual thread writing to a slow client would pin its carrier
+ * thread. A request thread opening a stream (and replaying the missed messages) still enters the monitor of
+ * the emitter once, when it is initialized.
+ * <p>
+ * The concurrency reaching the database is bounded by the connection pool
+ * ({@code spring.datasource.hikari.maximum-pool-size}): requests above it wait for a connection,
+ * parked without a carrier thread. Scheduled tasks stay on the platform scheduler thread.
+ * <p>
+ * The MySQL driver must be Connector/J 9 or later ({@code mysql.version}): the 8.x statements block on the socket
+ * inside {@code synchronized} methods, pinning the carrier for the duration of each query.
+ * <p>
+ * Record with {@code -XX:StartFlightRecording} and look for {@code jdk.VirtualThreadPinned} events to find the
+ * virtual threads blocked while pinned to their carrier ({@code -Djdk.tracePinnedThreads} can deadlock on JDK 21).
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory()));
+    }
+
+    /**
+     * Replaces the pooled executor of Spring Boot, used by {@code @Async}.
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("async-", 0).factory()));
+    }
+}
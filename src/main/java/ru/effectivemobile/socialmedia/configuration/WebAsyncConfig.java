@@ -0,0 +1,43 @@
+package ru.effectivemobile.socialmedia.configuration;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executor of the asynchronous MVC responses, the streamed lists (friends, all sent or received messages).
+ * A stream holds its worker and a database connection until the client has read the whole list, so the streams
+ * get a bounded pool of their own ({@code app.mvc.async.threads}) instead of the application executor, which runs
+ * the {@code @Async} timeline fan-out and message push. Streams above the bound wait in a queue
+ * ({@code app.mvc.async.queue-capacity}); when it is full the request is answered 503.
+ * <p>
+ * The pool is not a bean: an {@link java.util.concurrent.Executor} bean would replace the application executor
+ * of Spring Boot.
+ */
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer, DisposableBean {
+    private final ThreadPoolTaskExecutor streamExecutor = new ThreadPoolTaskExecutor();
+
+    public WebAsyncConfig(@Value("${app.mvc.async.threads}") int threads,
+                          @Value("${app.mvc.async.queue-capacity}") int queueCapacity) {
+        streamExecutor.setCorePoolSize(threads);
+        streamExecutor.setMaxPoolSize(threads);
+        streamExecutor.setQueueCapacity(queueCapacity);
+        streamExecutor.setThreadNamePrefix("mvc-async-");
+        streamExecutor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // Applied after the configurer of Spring Boot, which sets the application executor
+        configurer.setTaskExecutor(streamExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        streamExecutor.shutdown();
+    }
+}
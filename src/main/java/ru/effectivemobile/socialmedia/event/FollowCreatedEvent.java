@@ -0,0 +1,13 @@
+package ru.effectivemobile.socialmedia.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class FollowCreatedEvent {
+    private final long followerId;
+    private final long followeeId;
+}
@@ -0,0 +1,14 @@
+package ru.effectivemobile.socialmedia.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class MessageSentEvent {
+    private final long recipientId;
+    private final MessageDto message;
+}
@@ -0,0 +1,18 @@
+package ru.effectivemobile.socialmedia.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class PostCreatedEvent {
+    private final long postId;
+    private final long authorId;
+    private final Date creationTime;
+    private final String header;
+    private final String text;
+}
@@ -0,0 +1,8 @@
+package ru.effectivemobile.socialmedia.exception;
+
+public class PayloadTooLargeException extends BadRequestException {
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
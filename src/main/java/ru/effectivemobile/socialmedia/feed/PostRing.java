@@ -0,0 +1,112 @@
+package ru.effectivemobile.socialmedia.feed;
+
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size ring buffer of the newest posts of one author, newest first.
+ * Always holds the newest {@code size} posts of the author without gaps,
+ * so a read can be answered from it as long as it stays within the buffer,
+ * or goes past it when the buffer is {@code complete} (holds every post of the author).
+ */
+final class PostRing {
+    // Not synchronized: a virtual thread blocked on a monitor pins its carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PostDto[] posts;
+    private int head;
+    private int size;
+    private boolean complete;
+
+    /**
+     * @param newestFirst up to {@code capacity + 1} newest posts, the extra one only tells
+     *                    that the author has more posts than fit into the buffer
+     */
+    PostRing(int capacity, List<PostDto> newestFirst) {
+        posts = new PostDto[capacity];
+        size = Math.min(capacity, newestFirst.size());
+        for (int i = 0; i < size; i++) {
+            posts[i] = newestFirst.get(i);
+        }
+        complete = newestFirst.size() <= capacity;
+    }
+
+    /**
+     * Adds a new post in front. Returns the change of the size (0 if the oldest post was dropped).
+     */
+    int add(PostDto post) {
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (at(i).getId() == post.getId()) {
+                    return 0;
+                }
+            }
+            head = (head - 1 + posts.length) % posts.length;
+            posts[head] = post;
+            if (size < posts.length) {
+                size++;
+                return 1;
+            }
+            complete = false;
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a post. Returns the change of the size (-1 if the post was buffered).
+     */
+    int remove(long postId) {
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (at(i).getId() == postId) {
+                    for (int j = i; j < size - 1; j++) {
+                        posts[(head + j) % posts.length] = at(j + 1);
+                    }
+                    posts[(head + size - 1) % posts.length] = null;
+                    size--;
+                    return -1;
+                }
+            }
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copy of the buffered posts, newest first.
+     */
+    Snapshot snapshot() {
+        lock.lock();
+        try {
+            PostDto[] copy = new PostDto[size];
+            for (int i = 0; i < size; i++) {
+                copy[i] = at(i);
+            }
+            return new Snapshot(copy, complete);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PostDto at(int index) {
+        return posts[(head + index) % posts.length];
+    }
+
+    record Snapshot(PostDto[] posts, boolean complete) {
+    }
+}
@@ -0,0 +1,359 @@
+package ru.effectivemobile.socialmedia.feed;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.effectivemobile.socialmedia.repository.PostRepository;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Newest posts of the recently read authors, one {@link PostRing} per author, kept in memory
+ * to serve the first pages of user posts and of the activity feed without a query.
+ * The feed is assembled on read (pull model) by a k-way merge of the followees' buffers
+ * in the timeline order (creation time, then id, descending).
+ * <p>
+ * A ring is loaded on the first read of the author, in a transaction of its own, and updated by the post service
+ * after commit.
+ * Reads the buffers cannot answer exactly (deep pages, too many followees) return {@code null},
+ * and the caller falls back to the database.
+ * <p>
+ * Memory is bounded by the total number of cached posts ({@code app.feed.cache.max-posts}):
+ * the least recently read authors are evicted first. A cached post costs about 400 bytes
+ * with short texts and up to 1.2 KB with 255-character Cyrillic header and text.
+ */
+@Service
+@Slf4j
+public class RecentPostsCache {
+    // Version stripes detect a write that commits while a ring is being loaded
+    private static final int STRIPES = 1024;
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate loadTransaction;
+    private final boolean enabled;
+    private final int postsPerAuthor;
+    private final long maxPosts;
+    private final int maxFollowees;
+    private final int maxLoadsPerRead;
+
+    // Access-ordered for LRU eviction, guarded by the lock.
+    // A lock rather than a monitor: a virtual thread waiting to enter a monitor pins its carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, PostRing> rings = new LinkedHashMap<>(1024, 0.75f, true);
+    private long cachedPosts;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter cacheReads;
+    private final Counter databaseReads;
+
+    public RecentPostsCache(PostRepository postRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.feed.cache.enabled:true}") boolean enabled,
+                            @Value("${app.feed.cache.posts-per-author:20}") int postsPerAuthor,
+                            @Value("${app.feed.cache.max-posts:100000}") long maxPosts,
+                            @Value("${app.feed.cache.max-followees:500}") int maxFollowees,
+                            @Value("${app.feed.cache.max-loads-per-read:16}") int maxLoadsPerRead) {
+        this.postRepository = postRepository;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.postsPerAuthor = postsPerAuthor;
+        this.maxPosts = maxPosts;
+        this.maxFollowees = maxFollowees;
+        this.maxLoadsPerRead = maxLoadsPerRead;
+        hits = meterRegistry.counter("app.feed.cache.lookups", "result", "hit");
+        misses = meterRegistry.counter("app.feed.cache.lookups", "result", "miss");
+        evictions = meterRegistry.counter("app.feed.cache.evictions");
+        cacheReads = meterRegistry.counter("app.feed.cache.reads", "source", "cache");
+        databaseReads = meterRegistry.counter("app.feed.cache.reads", "source", "database");
+        Gauge.builder("app.feed.cache.authors", this, RecentPostsCache::authorCount).register(meterRegistry);
+        Gauge.builder("app.feed.cache.posts", this, RecentPostsCache::postCount).register(meterRegistry);
+    }
+
+    /**
+     * Posts of the author, newest first: {@code limit} posts after skipping {@code skip},
+     * only older than the post {@code beforeId} if it is not {@code null}.
+     *
+     * @return the posts, or {@code null} if the buffer cannot answer the read
+     */
+    public List<PostDto> getPosts(long authorId, Long beforeId, long skip, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        PostRing.Snapshot snapshot = ring(authorId).snapshot();
+        PostDto[] posts = snapshot.posts();
+        int start = 0;
+        if (beforeId != null) {
+            while (start < posts.length && posts[start].getId() >= beforeId) {
+                start++;
+            }
+        }
+        long end = start + skip + limit;
+        if (end > posts.length && !snapshot.complete()) {
+            databaseReads.increment();
+            return null;
+        }
+        cacheReads.increment();
+        List<PostDto> result = new ArrayList<>(limit);
+        for (long i = start + skip; i < Math.min(end, posts.length); i++) {
+            result.add(posts[(int) i]);
+        }
+        return result;
+    }
+
+    /**
+     * Feed of the followees, newest first: {@code limit} posts after skipping {@code skip},
+     * only after the position {@code after} (creation time, post id) if it is not {@code null}.
+     *
+     * @return the posts, or {@code null} if the buffers cannot answer the read
+     */
+    public List<PostDto> getFeed(long[] followeeIds, long[] after, long skip, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        if (followeeIds.length > maxFollowees) {
+            databaseReads.increment();
+            return null;
+        }
+        PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(1, followeeIds.length));
+        int loads = 0;
+        for (long followeeId : followeeIds) {
+            PostRing ring = cached(followeeId);
+            if (ring == null) {
+                if (loads++ == maxLoadsPerRead) {
+                    databaseReads.increment();
+                    return null;
+                }
+                ring = load(followeeId);
+            }
+            PostRing.Snapshot snapshot = ring.snapshot();
+            Source source = new Source(snapshot.posts(), snapshot.complete());
+            if (after != null) {
+                source.skipNotOlderThan(after[0], after[1]);
+            }
+            if (source.hasNext()) {
+                queue.add(source);
+            } else if (!source.complete) {
+                // Every buffered post is newer than the cursor, older ones are not in memory
+                databaseReads.increment();
+                return null;
+            }
+        }
+        List<PostDto> result = new ArrayList<>(limit);
+        long skipped = 0;
+        while (result.size() < limit && !queue.isEmpty()) {
+            Source source = queue.poll();
+            PostDto post = source.next();
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                result.add(post);
+            }
+            if (source.hasNext()) {
+                queue.add(source);
+            } else if (!source.complete && result.size() < limit) {
+                // Older posts of this author may precede what is left in the other buffers
+                databaseReads.increment();
+                return null;
+            }
+        }
+        cacheReads.increment();
+        return result;
+    }
+
+    /**
+     * Adds a new post to the buffer of its author once the transaction commits.
+     */
+    public void addPost(long authorId, PostDto post) {
+        afterCommit(() -> {
+            versions.incrementAndGet(stripe(authorId));
+            lock.lock();
+            try {
+                PostRing ring = rings.get(authorId);
+                if (ring != null) {
+                    cachedPosts += ring.add(post);
+                    evict();
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Removes a post from the buffer of its author once the transaction commits.
+     */
+    public void removePost(long authorId, long postId) {
+        afterCommit(() -> {
+            versions.incrementAndGet(stripe(authorId));
+            lock.lock();
+            try {
+                PostRing ring = rings.get(authorId);
+                if (ring != null) {
+                    cachedPosts += ring.remove(postId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            rings.clear();
+            cachedPosts = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int authorCount() {
+        lock.lock();
+        try {
+            return rings.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long postCount() {
+        lock.lock();
+        try {
+            return cachedPosts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PostRing ring(long authorId) {
+        PostRing ring = cached(authorId);
+        return ring != null ? ring : load(authorId);
+    }
+
+    private PostRing cached(long authorId) {
+        PostRing ring;
+        lock.lock();
+        try {
+            ring = rings.get(authorId);
+        } finally {
+            lock.unlock();
+        }
+        if (ring != null) {
+            hits.increment();
+        }
+        return ring;
+    }
+
+    private PostRing load(long authorId) {
+        misses.increment();
+        long version = versions.get(stripe(authorId));
+        log.debug("Database query to load recent posts of the user: {}", authorId);
+        // Not in the caller's transaction: its snapshot may predate the version read (repeatable read)
+        // and miss a post whose commit has already been counted, which the version check cannot see
+        PostRing ring = new PostRing(postsPerAuthor, loadTransaction.execute(status ->
+                postRepository.findDtosByUserId(authorId, PageRequest.of(0, postsPerAuthor + 1))));
+        lock.lock();
+        try {
+            // A post of the author committed during the load, the ring may miss it: serve it once, don't cache
+            if (versions.get(stripe(authorId)) == version && !rings.containsKey(authorId)) {
+                rings.put(authorId, ring);
+                cachedPosts += ring.size();
+                evict();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ring;
+    }
+
+    private void evict() {
+        Iterator<PostRing> eldest = rings.values().iterator();
+        while (cachedPosts > maxPosts && eldest.hasNext()) {
+            cachedPosts -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static int stripe(long authorId) {
+        return (int) ((authorId ^ (authorId >>> 32)) & (STRIPES - 1));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Read position in the posts of one followee, ordered like the timeline.
+     */
+    private static final class Source implements Comparable<Source> {
+        private final PostDto[] posts;
+        private final boolean complete;
+        private int position;
+
+        Source(PostDto[] posts, boolean complete) {
+            this.posts = posts;
+            this.complete = complete;
+        }
+
+        void skipNotOlderThan(long creationTime, long postId) {
+            while (position < posts.length && compare(posts[position], creationTime, postId) <= 0) {
+                position++;
+            }
+        }
+
+        boolean hasNext() {
+            return position < posts.length;
+        }
+
+        PostDto next() {
+            return posts[position++];
+        }
+
+        @Override
+        public int compareTo(Source other) {
+            PostDto post = other.posts[other.position];
+            return compare(posts[position], post.getCreationTime().getTime(), post.getId());
+        }
+
+        /**
+         * Negative if the post comes before (is newer than) the position in the timeline order.
+         */
+        private static int compare(PostDto post, long creationTime, long postId) {
+            int byTime = Long.compare(creationTime, post.getCreationTime().getTime());
+            return byTime != 0 ? byTime : Long.compare(postId, post.getId());
+        }
+    }
+}
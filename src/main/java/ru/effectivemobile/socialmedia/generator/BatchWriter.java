@@ -0,0 +1,48 @@
+package ru.effectivemobile.socialmedia.generator;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers the rows of one INSERT statement and sends them as JDBC batches.
+ */
+final class BatchWriter implements AutoCloseable {
+    private final JdbcTemplate jdbcTemplate;
+    private final String sql;
+    private final int batchSize;
+    private final List<Object[]> rows;
+    private long count;
+
+    BatchWriter(JdbcTemplate jdbcTemplate, String sql, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sql = sql;
+        this.batchSize = batchSize;
+        this.rows = new ArrayList<>(batchSize);
+    }
+
+    void add(Object... row) {
+        rows.add(row);
+        if (rows.size() == batchSize) {
+            flush();
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    private void flush() {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            count += rows.size();
+            rows.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
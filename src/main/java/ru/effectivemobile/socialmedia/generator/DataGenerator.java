@@ -0,0 +1,344 @@
+package ru.effectivemobile.socialmedia.generator;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.graph.LongHashSet;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.id.Snowflake;
+import ru.effectivemobile.socialmedia.model.ERole;
+import ru.effectivemobile.socialmedia.model.Role;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+import ru.effectivemobile.socialmedia.search.UsernameIndex;
+import ru.effectivemobile.socialmedia.service.PostSearchService;
+import ru.effectivemobile.socialmedia.service.TimelineService;
+import ru.effectivemobile.socialmedia.storage.BlobStore;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Bulk-loads a synthetic social network for benchmarking:
+ * <pre>
+ * java -jar social-media.jar --spring.profiles.active=generator --generator.users=1000000
+ * </pre>
+ * <ul>
+ *     <li>follows: followees are drawn from a Zipf law over the users, so a few of the first users
+ *     collect a large share of all followers (with a million users the first one gets about 7%)</li>
+ *     <li>friendships: mutual, with follows in both directions as an accepted invitation creates,
+ *     and a message history for each of them</li>
+ *     <li>posts: the number per user follows a Pareto law, the times are denser towards now
+ *     and follow a daily cycle; optionally with images from a small set of distinct blobs</li>
+ * </ul>
+ * Rows are written with plain JDBC batches ({@code rewriteBatchedStatements} turns them into
+ * multi-row INSERTs on MySQL). Every random choice comes from one seeded generator, the times are
+ * counted back from the fixed {@code generator.now}, and the ids are derived from the row times and
+ * positions, so the same settings produce the same data.
+ * The ids are time-ordered like the ones of {@link ru.effectivemobile.socialmedia.id.SnowflakeId}
+ * and lie in the past, so they never collide with the ids issued by the running application.
+ * The generator expects an empty database.
+ * With {@code generator.exit=false} the application goes on serving the generated data: the friend graph,
+ * the username index and the search index, loaded from the empty tables at startup, are rebuilt first.
+ */
+@Component
+@Profile("generator")
+@EnableConfigurationProperties(GeneratorProperties.class)
+@Slf4j
+public class DataGenerator implements ApplicationRunner {
+    private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod " +
+            "tempor incididunt ut labore et dolore magna aliqua enim ad minim veniam quis nostrud exercitation " +
+            "ullamco laboris nisi aliquip ex ea commodo consequat duis aute irure in reprehenderit voluptate " +
+            "velit esse cillum fugiat nulla pariatur excepteur sint occaecat cupidatat non proident").split(" ");
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+    // Length of the text columns
+    private static final int MAX_TEXT_LENGTH = 255;
+    // Posts of one user beyond this factor of the average are cut off
+    private static final int MAX_COUNT_FACTOR = 100;
+
+    private final GeneratorProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final RoleRepository roleRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final BlobStore blobStore;
+    private final TimelineService timelineService;
+    private final ApplicationContext applicationContext;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SocialGraphIndex socialGraphIndex;
+    private final UsernameIndex usernameIndex;
+    private final PostSearchService postSearchService;
+    private final int searchRebuildThreads;
+    private final int searchRebuildBatchSize;
+
+    private long now;
+    private long start;
+    private long[] userIds;
+    private long[] registrationTimes;
+
+    public DataGenerator(GeneratorProperties properties,
+                         JdbcTemplate jdbcTemplate,
+                         RoleRepository roleRepository,
+                         PasswordEncoder passwordEncoder,
+                         BlobStore blobStore,
+                         TimelineService timelineService,
+                         ApplicationContext applicationContext,
+                         EntityManagerFactory entityManagerFactory,
+                         SocialGraphIndex socialGraphIndex,
+                         UsernameIndex usernameIndex,
+                         PostSearchService postSearchService,
+                         @Value("${app.search.rebuild-threads}") int searchRebuildThreads,
+                         @Value("${app.search.rebuild-batch-size}") int searchRebuildBatchSize) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.blobStore = blobStore;
+        this.timelineService = timelineService;
+        this.applicationContext = applicationContext;
+        this.entityManagerFactory = entityManagerFactory;
+        this.socialGraphIndex = socialGraphIndex;
+        this.usernameIndex = usernameIndex;
+        this.postSearchService = postSearchService;
+        this.searchRebuildThreads = searchRebuildThreads;
+        this.searchRebuildBatchSize = searchRebuildBatchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Generating data: {}", properties);
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        now = properties.getNow().toEpochMilli();
+        start = now - properties.getDays() * DAY_MILLIS;
+        if (now > System.currentTimeMillis() || start < Snowflake.EPOCH) {
+            throw new IllegalStateException("Generated data must lie between the id epoch and the current time: "
+                    + "set generator.now and generator.days accordingly");
+        }
+
+        timed("users", () -> generateUsers(random.split()));
+        timed("follows", () -> generateFollows(random.split()));
+        timed("friendships and messages", () -> generateFriendships(random.split()));
+        timed("posts", () -> generatePosts(random.split()));
+        if (properties.isTimeline()) {
+            timed("timelines", timelineService::rebuildIfEmpty);
+        }
+        // The rows have been written with plain SQL, bypassing the second-level cache
+        entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
+        log.info("Data generation completed");
+        if (properties.isExit()) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+        // The in-memory indexes were loaded before the rows were written
+        socialGraphIndex.reload();
+        usernameIndex.reload();
+        timed("search index", () -> postSearchService.rebuild(searchRebuildThreads, searchRebuildBatchSize));
+    }
+
+    private long generateUsers(SplittableRandom random) {
+        int users = properties.getUsers();
+        long roleId = roleRepository.findByName(ERole.ROLE_USER).orElseGet(() -> {
+            Role role = new Role();
+            role.setName(ERole.ROLE_USER);
+            return roleRepository.save(role);
+        }).getId();
+        // One hash for all users: hashing is deliberately slow
+        String password = passwordEncoder.encode(properties.getPassword());
+        userIds = new long[users];
+        registrationTimes = new long[users];
+        // Earlier users register earlier, within the first half of the period
+        for (int i = 0; i < users; i++) {
+            registrationTimes[i] = start + (long) ((double) i / users * (now - start) / 2);
+            userIds[i] = Snowflake.compose(registrationTimes[i], i);
+        }
+        BatchWriter userWriter = writer("INSERT INTO user (id, username, email, password) VALUES (?, ?, ?, ?)");
+        try (userWriter) {
+            for (int i = 0; i < users; i++) {
+                userWriter.add(userIds[i], "user" + i, "user" + i + "@example.com", password);
+            }
+        }
+        // After all users, the roles reference them
+        BatchWriter roleWriter = writer("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)");
+        try (roleWriter) {
+            for (long userId : userIds) {
+                roleWriter.add(userId, roleId);
+            }
+        }
+        return userWriter.count() + roleWriter.count();
+    }
+
+    private long generateFollows(SplittableRandom random) {
+        int users = properties.getUsers();
+        BatchWriter writer = writer("INSERT IGNORE INTO follow (follower_id, followee_id, created_at) VALUES (?, ?, ?)");
+        try (writer) {
+            Set<Integer> followees = new HashSet<>();
+            for (int follower = 0; follower < users; follower++) {
+                int count = Math.min(paretoCount(random, properties.getFollowsPerUser()), users - 1);
+                followees.clear();
+                // Popular users are drawn again and again, give up on the rare repeated misses
+                for (int attempt = 0; followees.size() < count && attempt < count * 3; attempt++) {
+                    int followee = zipf(random, users);
+                    if (followee != follower && followees.add(followee)) {
+                        long createdAt = randomTime(random,
+                                Math.max(registrationTimes[follower], registrationTimes[followee]));
+                        writer.add(userIds[follower], userIds[followee], new Timestamp(createdAt));
+                    }
+                }
+            }
+        }
+        return writer.count();
+    }
+
+    private long generateFriendships(SplittableRandom random) {
+        int users = properties.getUsers();
+        LongHashSet pairs = new LongHashSet();
+        long messageIndex = 0;
+        BatchWriter friendWriter = writer("INSERT INTO user_friend (user_id, friend_id) VALUES (?, ?)");
+        BatchWriter followWriter = writer(
+                "INSERT IGNORE INTO follow (follower_id, followee_id, created_at) VALUES (?, ?, ?)");
+        BatchWriter messageWriter = writer("INSERT INTO message " +
+                "(id, text, sender, recipient, user_low, user_high) VALUES (?, ?, ?, ?, ?, ?)");
+        try (friendWriter; followWriter; messageWriter) {
+            for (int user = 0; user < users; user++) {
+                // Every friendship counts for both users
+                int count = paretoCount(random, properties.getFriendsPerUser()) / 2;
+                for (int i = 0; i < count; i++) {
+                    // Half of the friends are popular users, half are anyone
+                    int friend = random.nextBoolean() ? zipf(random, users) : random.nextInt(users);
+                    if (friend == user || !pairs.add((long) Math.min(user, friend) * users + Math.max(user, friend) + 1)) {
+                        continue;
+                    }
+                    long createdAt = randomTime(random, Math.max(registrationTimes[user], registrationTimes[friend]));
+                    Timestamp timestamp = new Timestamp(createdAt);
+                    friendWriter.add(userIds[user], userIds[friend]);
+                    friendWriter.add(userIds[friend], userIds[user]);
+                    followWriter.add(userIds[user], userIds[friend], timestamp);
+                    followWriter.add(userIds[friend], userIds[user], timestamp);
+
+                    long[] times = new long[paretoCount(random, properties.getMessagesPerFriendship())];
+                    for (int m = 0; m < times.length; m++) {
+                        times[m] = randomTime(random, createdAt);
+                    }
+                    Arrays.sort(times);
+                    for (long time : times) {
+                        boolean fromUser = random.nextBoolean();
+                        long sender = userIds[fromUser ? user : friend];
+                        long recipient = userIds[fromUser ? friend : user];
+                        messageWriter.add(Snowflake.compose(time, messageIndex++), text(random, 3, 20),
+                                sender, recipient, Math.min(sender, recipient), Math.max(sender, recipient));
+                    }
+                }
+            }
+        }
+        return friendWriter.count() + followWriter.count() + messageWriter.count();
+    }
+
+    private long generatePosts(SplittableRandom random) {
+        int users = properties.getUsers();
+        String[] images = generateImages(random.split());
+        long postIndex = 0;
+        BatchWriter writer = writer("INSERT INTO post (id, text, header, image_hash, user, creation_time) " +
+                "VALUES (?, ?, ?, ?, ?, ?)");
+        try (writer) {
+            for (int user = 0; user < users; user++) {
+                int count = paretoCount(random, properties.getPostsPerUser());
+                for (int i = 0; i < count; i++) {
+                    long time = randomTime(random, registrationTimes[user]);
+                    String image = images.length > 0 && random.nextDouble() < properties.getImageRatio()
+                            ? images[random.nextInt(images.length)]
+                            : null;
+                    writer.add(Snowflake.compose(time, postIndex++), text(random, 10, 40), text(random, 2, 8),
+                            image, userIds[user], new Timestamp(time));
+                }
+            }
+        }
+        return writer.count();
+    }
+
+    private String[] generateImages(SplittableRandom random) {
+        if (properties.getImageRatio() <= 0) {
+            return new String[0];
+        }
+        String[] hashes = new String[properties.getDistinctImages()];
+        for (int i = 0; i < hashes.length; i++) {
+            byte[] content = new byte[2048 + random.nextInt(6144)];
+            random.nextBytes(content);
+            System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+            hashes[i] = blobStore.store(content);
+        }
+        return hashes;
+    }
+
+    /**
+     * Random time between {@code notBefore} and now, denser towards now and in the daytime.
+     */
+    private long randomTime(SplittableRandom random, long notBefore) {
+        long span = Math.max(1, now - notBefore);
+        while (true) {
+            double u = random.nextDouble();
+            long time = now - 1 - (long) (span * u * u);
+            double hour = (time % DAY_MILLIS) / (double) Duration.ofHours(1).toMillis();
+            // Activity peaks in the evening and is lowest at night
+            double activity = 0.2 + 0.8 * Math.pow(Math.sin(Math.PI * ((hour + 4) % 24) / 24), 2);
+            if (random.nextDouble() < activity) {
+                return Math.max(notBefore, time);
+            }
+        }
+    }
+
+    /**
+     * Zipf-distributed index in [0, n) with exponent 1: P(index < k) = ln(k + 1) / ln(n + 1).
+     */
+    private static int zipf(SplittableRandom random, int n) {
+        return Math.min(n - 1, (int) Math.pow(n + 1, random.nextDouble()) - 1);
+    }
+
+    /**
+     * Pareto-distributed count (shape 2) with the given mean.
+     */
+    private static int paretoCount(SplittableRandom random, int mean) {
+        double pareto = 1 / Math.sqrt(1 - random.nextDouble());
+        return (int) Math.min((long) mean * MAX_COUNT_FACTOR, Math.round(mean * pareto / 2));
+    }
+
+    private static String text(SplittableRandom random, int minWords, int maxWords) {
+        int words = minWords + random.nextInt(maxWords - minWords + 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text.toString();
+    }
+
+    private BatchWriter writer(String sql) {
+        return new BatchWriter(jdbcTemplate, sql, properties.getBatchSize());
+    }
+
+    private void timed(String phase, RowsTask task) {
+        long begin = System.nanoTime();
+        long rows = task.run();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        log.info("Generated {}: {} rows in {} s ({} rows/s)", phase, rows,
+                String.format("%.1f", seconds), Math.round(rows / Math.max(seconds, 0.001)));
+    }
+
+    @FunctionalInterface
+    private interface RowsTask {
+        long run();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.effectivemobile.socialmedia.generator;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Instant;
+
+/**
+ * Size and shape of the data created by {@link DataGenerator}.
+ */
+@Data
+@ConfigurationProperties(prefix = "generator")
+public class GeneratorProperties {
+    // Seed of all random choices: the same seed and sizes produce the same data
+    private long seed = 42;
+    private int users = 10_000;
+    // Average number of users followed by a user; followees are chosen by a Zipf law,
+    // so the first users become celebrities with a large share of all followers
+    private int followsPerUser = 20;
+    private int friendsPerUser = 5;
+    private int postsPerUser = 10;
+    private int messagesPerFriendship = 5;
+    // Share of posts with an image, and the number of distinct images they are drawn from
+    private double imageRatio = 0.0;
+    private int distinctImages = 100;
+    // Posts and messages are spread over this many days before now, denser towards now
+    private int days = 365;
+    // The "now" of the generated data: fixed, so that the same seed gives the same data on any day.
+    // Must lie in the past, where the generated ids cannot collide with the ones issued by the application
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+    private String password = "password";
+    private int batchSize = 5_000;
+    // Fill the materialized timelines after loading
+    private boolean timeline = true;
+    // Stop the application when done, otherwise rebuild its in-memory and search indexes and go on serving
+    private boolean exit = true;
+}
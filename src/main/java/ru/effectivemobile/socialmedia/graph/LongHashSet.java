@@ -0,0 +1,144 @@
+package ru.effectivemobile.socialmedia.graph;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive {@code long} values with linear probing.
+ * Values are stored unboxed in a single {@code long[]}, 0 marks an empty slot,
+ * so 0 itself cannot be stored (entity ids start at 1).
+ * <p>
+ * The table is a power of two kept between 3/8 and 3/4 full, i.e. 10.7 to 21.3 bytes
+ * per value plus 40 bytes of fixed overhead. A boxed {@code HashSet<Long>} needs
+ * about 56 bytes per value. Not thread-safe.
+ */
+public class LongHashSet {
+    private static final int MIN_CAPACITY = 4;
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+
+    public LongHashSet() {
+        table = new long[MIN_CAPACITY];
+    }
+
+    public boolean add(long value) {
+        checkValue(value);
+        int mask = table.length - 1;
+        int slot = slot(value, mask);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        if (++size > (table.length >> 2) * 3) {
+            resize(table.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int slot = slot(value, mask);
+        long current;
+        while ((current = table[slot]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int slot = slot(value, mask);
+        while (table[slot] != value) {
+            if (table[slot] == EMPTY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = slot(table[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = EMPTY;
+        size--;
+        if (table.length > MIN_CAPACITY && size < (table.length >> 3) * 3) {
+            resize(table.length >> 1);
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values in ascending order.
+     */
+    public long[] toSortedArray() {
+        long[] values = new long[size];
+        int i = 0;
+        for (long value : table) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Approximate heap footprint: object header and fields plus the table array.
+     */
+    public long memoryBytes() {
+        return 24L + 16L + 8L * table.length;
+    }
+
+    private void resize(int capacity) {
+        long[] old = table;
+        table = new long[Math.max(capacity, MIN_CAPACITY)];
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int slot = slot(value, mask);
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private static int slot(long value, int mask) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void checkValue(long value) {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("0 cannot be stored in LongHashSet");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ru.effectivemobile.socialmedia.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory adjacency of the friend and follow graphs keyed by user id.
+ * Edge checks are O(1) lookups in primitive {@link LongHashSet}s instead of loading
+ * the whole {@code List<User>} collection of the user from the database.
+ * <p>
+ * The index is loaded from the user_friend and follow tables on startup, before the web server accepts requests,
+ * and is updated by the services after their transaction commits.
+ * <p>
+ * Memory: every friendship and every follow is stored in both directions, so an edge costs
+ * two set entries, about 28 bytes on average (see {@link LongHashSet}), plus about 120 bytes
+ * per user with at least one edge (map node, boxed key, set object and minimal table).
+ * This is roughly 28 MB per million edges, plus the per-user overhead.
+ * {@link #memoryBytes()} reports the actual footprint, which is logged after loading.
+ */
+@Service
+@Slf4j
+public class SocialGraphIndex implements SmartInitializingSingleton {
+    private static final long MAP_ENTRY_BYTES = 48L;
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, LongHashSet> friends = new ConcurrentHashMap<>();
+    private final Map<Long, LongHashSet> following = new ConcurrentHashMap<>();
+    private final Map<Long, LongHashSet> followers = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SocialGraphIndex(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the database.
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            friends.clear();
+            following.clear();
+            followers.clear();
+            jdbcTemplate.query("SELECT user_id, friend_id FROM user_friend", resultSet -> {
+                link(friends, resultSet.getLong(1), resultSet.getLong(2));
+            });
+            jdbcTemplate.query("SELECT follower_id, followee_id FROM follow", resultSet -> {
+                long followerId = resultSet.getLong(1);
+                long followeeId = resultSet.getLong(2);
+                link(following, followerId, followeeId);
+                link(followers, followeeId, followerId);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Social graph index loaded in {} ms: {} edges, {} bytes",
+                System.currentTimeMillis() - start, edgeCount(), memoryBytes());
+    }
+
+    public boolean areFriends(long userId, long otherId) {
+        return contains(friends, userId, otherId);
+    }
+
+    public boolean follows(long followerId, long followeeId) {
+        return contains(following, followerId, followeeId);
+    }
+
+    public long[] friendIds(long userId) {
+        return values(friends, userId);
+    }
+
+    public long[] followingIds(long userId) {
+        return values(following, userId);
+    }
+
+    public int followerCount(long userId) {
+        lock.readLock().lock();
+        try {
+            LongHashSet set = followers.get(userId);
+            return set == null ? 0 : set.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addFriendship(long userId, long friendId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                link(friends, userId, friendId);
+                link(friends, friendId, userId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeFriendship(long userId, long friendId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                unlink(friends, userId, friendId);
+                unlink(friends, friendId, userId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void addFollow(long followerId, long followeeId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                link(following, followerId, followeeId);
+                link(followers, followeeId, followerId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeFollow(long followerId, long followeeId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                unlink(following, followerId, followeeId);
+                unlink(followers, followeeId, followerId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Number of stored directed entries: each friendship and each follow counts twice.
+     */
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            return count(friends) + count(following) + count(followers);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return memoryBytes(friends) + memoryBytes(following) + memoryBytes(followers);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean contains(Map<Long, LongHashSet> adjacency, long from, long to) {
+        lock.readLock().lock();
+        try {
+            LongHashSet set = adjacency.get(from);
+            return set != null && set.contains(to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] values(Map<Long, LongHashSet> adjacency, long from) {
+        lock.readLock().lock();
+        try {
+            LongHashSet set = adjacency.get(from);
+            return set == null ? new long[0] : set.toSortedArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void link(Map<Long, LongHashSet> adjacency, long from, long to) {
+        adjacency.computeIfAbsent(from, id -> new LongHashSet()).add(to);
+    }
+
+    private static void unlink(Map<Long, LongHashSet> adjacency, long from, long to) {
+        LongHashSet set = adjacency.get(from);
+        if (set != null && set.remove(to) && set.isEmpty()) {
+            adjacency.remove(from);
+        }
+    }
+
+    private static long count(Map<Long, LongHashSet> adjacency) {
+        long count = 0;
+        for (LongHashSet set : adjacency.values()) {
+            count += set.size();
+        }
+        return count;
+    }
+
+    private static long memoryBytes(Map<Long, LongHashSet> adjacency) {
+        long bytes = 0;
+        for (LongHashSet set : adjacency.values()) {
+            bytes += MAP_ENTRY_BYTES + set.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.effectivemobile.socialmedia.id;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit id generator.
+ * <pre>
+ * | 0 | 41 bits: milliseconds since {@link #EPOCH} | 10 bits: node id | 12 bits: sequence |
+ * </pre>
+ * Ids grow with time, so they keep the clustered index append-only and can be used for
+ * keyset pagination like the identity ids they replace. Generation is a compare-and-set
+ * of the last issued id: lock-free and allocation-free. When the 4096 ids of a millisecond
+ * are used up, the generator borrows the next millisecond instead of waiting, and it never
+ * goes back if the wall clock does.
+ */
+public final class Snowflake {
+    // 2023-01-01T00:00:00Z, the timestamp bits last until 2092
+    public static final long EPOCH = 1_672_531_200_000L;
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final Map<Integer, Snowflake> INSTANCES = new ConcurrentHashMap<>();
+
+    private final long nodeBits;
+    private final AtomicLong lastId = new AtomicLong();
+
+    public Snowflake(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Generator shared by all entities of the node, so ids are unique across tables.
+     */
+    public static Snowflake forNode(int nodeId) {
+        return INSTANCES.computeIfAbsent(nodeId, Snowflake::new);
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = lastId.get();
+            long lastTimestamp = last >>> TIMESTAMP_SHIFT;
+            long timestamp = System.currentTimeMillis() - EPOCH;
+            long sequence;
+            if (timestamp > lastTimestamp) {
+                sequence = 0;
+            } else {
+                timestamp = lastTimestamp;
+                sequence = (last & SEQUENCE_MASK) + 1;
+                if (sequence > SEQUENCE_MASK) {
+                    timestamp++;
+                    sequence = 0;
+                }
+            }
+            long id = timestamp << TIMESTAMP_SHIFT | nodeBits | sequence;
+            if (lastId.compareAndSet(last, id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Id with the given timestamp and low 22 bits (node id and sequence), for data created
+     * outside of the application, such as generated test data.
+     */
+    public static long compose(long timestampMillis, long lowBits) {
+        return (timestampMillis - EPOCH) << TIMESTAMP_SHIFT | (lowBits & ((1L << TIMESTAMP_SHIFT) - 1));
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.effectivemobile.socialmedia.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+
+/**
+ * Hibernate generator behind {@link SnowflakeId}. The node id is read from the
+ * {@value #NODE_ID_SETTING} setting and must be unique for every running instance.
+ */
+public class SnowflakeIdGenerator implements IdentifierGenerator {
+    public static final String NODE_ID_SETTING = "app.id.node-id";
+
+    private final Snowflake snowflake;
+
+    public SnowflakeIdGenerator(SnowflakeId config, Member member, CustomIdGeneratorCreationContext context) {
+        String nodeId = context.getServiceRegistry().getService(ConfigurationService.class)
+                .getSetting(NODE_ID_SETTING, StandardConverters.STRING, "0");
+        this.snowflake = Snowflake.forNode(Integer.parseInt(nodeId.trim()));
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return snowflake.nextId();
+    }
+}
@@ -0,0 +1,117 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Database work done by the current thread between {@link #start} and {@link #stop}:
+ * executed statements (round trips, a JDBC batch counts once), rows read or written,
+ * time spent in the driver, and how often every statement shape was executed.
+ * <p>
+ * Scopes nest: a statement is recorded in the current scope and in all enclosing ones,
+ * so a test can open a scope around a request that opens its own.
+ */
+public final class QueryStats {
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final QueryStats parent;
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int statements;
+    private long rows;
+    private long elapsedMillis;
+
+    private QueryStats(String name, QueryStats parent) {
+        this.name = name;
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a scope on the current thread. Must be closed with {@link #stop()} in a finally block.
+     */
+    public static QueryStats start(String name) {
+        QueryStats stats = new QueryStats(name, CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * The innermost open scope of the current thread, or {@code null}.
+     */
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public void stop() {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Records an executed statement and returns how many times its shape has been executed in this scope.
+     */
+    int recordStatement(String sql, long elapsedMillis, long rows) {
+        int count = 0;
+        for (QueryStats stats = this; stats != null; stats = stats.parent) {
+            stats.statements++;
+            stats.elapsedMillis += elapsedMillis;
+            stats.rows += rows;
+            int shapeCount = stats.shapes.merge(sql, 1, Integer::sum);
+            if (stats == this) {
+                count = shapeCount;
+            }
+        }
+        return count;
+    }
+
+    void recordRow() {
+        for (QueryStats stats = this; stats != null; stats = stats.parent) {
+            stats.rows++;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Number of executions per statement shape (the SQL with its parameter placeholders).
+     */
+    public Map<String, Integer> getShapes() {
+        return Collections.unmodifiableMap(shapes);
+    }
+
+    /**
+     * Number of statement shapes executed at least {@code threshold} times.
+     */
+    public int repeatedShapes(int threshold) {
+        int repeated = 0;
+        for (int count : shapes.values()) {
+            if (count >= threshold) {
+                repeated++;
+            }
+        }
+        return repeated;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + statements + " statements, " + rows + " rows, " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,38 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source in a proxy that reports every executed statement to {@link QueryStats}.
+ * Statements run outside of a {@link QueryStats} scope (migrations, async fan-out) only pay
+ * for a thread-local lookup.
+ */
+@Component
+@ConditionalOnProperty(name = "app.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatsDataSourceProcessor implements BeanPostProcessor {
+    private final int repeatThreshold;
+
+    public QueryStatsDataSourceProcessor(@Value("${app.query-stats.repeat-threshold:10}") int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+            return bean;
+        }
+        QueryStatsListener listener = new QueryStatsListener(repeatThreshold);
+        return ProxyDataSourceBuilder.create(dataSource)
+                .name(beanName)
+                .listener(listener)
+                .proxyResultSet(listener)
+                .build();
+    }
+}
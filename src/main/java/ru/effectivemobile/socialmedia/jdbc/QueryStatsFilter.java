@@ -0,0 +1,154 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a {@link QueryStats} scope per HTTP request and records its database work
+ * as {@code app.request.statements}, {@code app.request.rows}, {@code app.request.db}
+ * and {@code app.request.repeated.statements}, tagged by method and route template.
+ * <p>
+ * With {@code app.query-stats.headers=true} (the dev profile) the numbers are also returned
+ * in the {@code X-Query-Count}, {@code X-Query-Rows} and {@code X-Query-Time-Ms} headers.
+ * They are added when the response starts being written, so statements executed
+ * while streaming the body are not included.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "app.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class QueryStatsFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_ROWS_HEADER = "X-Query-Rows";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean headers;
+    private final int repeatThreshold;
+
+    public QueryStatsFilter(MeterRegistry meterRegistry,
+                            @Value("${app.query-stats.headers:false}") boolean headers,
+                            @Value("${app.query-stats.repeat-threshold:10}") int repeatThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.headers = headers;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryStats stats = QueryStats.start(request.getMethod() + " " + request.getRequestURI());
+        HttpServletResponse target = headers ? new StatsHeaderResponse(response, stats) : response;
+        try {
+            filterChain.doFilter(request, target);
+        } finally {
+            stats.stop();
+            if (target instanceof StatsHeaderResponse statsResponse && !response.isCommitted()) {
+                statsResponse.addStatsHeaders();
+            }
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern == null ? "UNKNOWN" : pattern.toString());
+        DistributionSummary.builder("app.request.statements")
+                .description("Statements executed per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder("app.request.rows")
+                .description("Rows read or written per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.getRows());
+        Timer.builder("app.request.db")
+                .description("Time spent executing statements per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.getElapsedMillis(), TimeUnit.MILLISECONDS);
+        int repeated = stats.repeatedShapes(repeatThreshold);
+        if (repeated > 0) {
+            meterRegistry.counter("app.request.repeated.statements", tags).increment(repeated);
+        }
+        log.debug("{}", stats);
+    }
+
+    private static class StatsHeaderResponse extends HttpServletResponseWrapper {
+        private final QueryStats stats;
+        private boolean added;
+
+        StatsHeaderResponse(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void addStatsHeaders() {
+            if (added) {
+                return;
+            }
+            added = true;
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            response.setHeader(QUERY_COUNT_HEADER, String.valueOf(stats.getStatements()));
+            response.setHeader(QUERY_ROWS_HEADER, String.valueOf(stats.getRows()));
+            response.setHeader(QUERY_TIME_HEADER, String.valueOf(stats.getElapsedMillis()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addStatsHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addStatsHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addStatsHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addStatsHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addStatsHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addStatsHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
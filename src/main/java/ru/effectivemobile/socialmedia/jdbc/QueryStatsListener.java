@@ -0,0 +1,80 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.proxy.ResultSetProxyLogic;
+import net.ttddyy.dsproxy.proxy.ResultSetProxyLogicFactory;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Feeds the statements executed through the proxied data source into the current {@link QueryStats}.
+ * Rows read are counted on {@link ResultSet#next()}, rows written from the update counts.
+ * Warns once per scope when a statement shape reaches the repeat threshold,
+ * which usually means a lazy association loaded in a loop (N+1).
+ */
+@Slf4j
+class QueryStatsListener implements QueryExecutionListener, ResultSetProxyLogicFactory {
+    private final int repeatThreshold;
+
+    QueryStatsListener(int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryStats stats = QueryStats.current();
+        if (stats == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        String sql = queryInfoList.get(0).getQuery();
+        int count = stats.recordStatement(sql, execInfo.getElapsedTime(), updatedRows(execInfo.getResult()));
+        if (count == repeatThreshold) {
+            log.warn("Statement executed {} times within {}, possible N+1: {}", count, stats.getName(), sql);
+        }
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        ResultSetProxyLogic delegate = ResultSetProxyLogicFactory.DEFAULT.create(resultSet, connectionInfo, proxyConfig);
+        return (method, args) -> {
+            Object result = delegate.invoke(method, args);
+            if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+                QueryStats stats = QueryStats.current();
+                if (stats != null) {
+                    stats.recordRow();
+                }
+            }
+            return result;
+        };
+    }
+
+    private static long updatedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(count, 0);
+        }
+        if (result instanceof Long count) {
+            return Math.max(count, 0);
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.effectivemobile.socialmedia.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Single-node broker: listeners are kept in memory by user id.
+ */
+@Component
+@Slf4j
+public class InProcessMessageBroker implements MessageBroker {
+    private final Map<Long, Set<Consumer<MessageDto>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(long recipientId, MessageDto message) {
+        Set<Consumer<MessageDto>> userListeners = listeners.get(recipientId);
+        if (userListeners == null) {
+            return;
+        }
+        for (Consumer<MessageDto> listener : userListeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("Failed to deliver message {} to user {}: {}", message.getId(), recipientId, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Subscription subscribe(long userId, Consumer<MessageDto> listener) {
+        listeners.compute(userId, (id, userListeners) -> {
+            Set<Consumer<MessageDto>> result = userListeners == null ? new CopyOnWriteArraySet<>() : userListeners;
+            result.add(listener);
+            return result;
+        });
+        return () -> listeners.computeIfPresent(userId, (id, userListeners) -> {
+            userListeners.remove(listener);
+            return userListeners.isEmpty() ? null : userListeners;
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package ru.effectivemobile.socialmedia.messaging;
+
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers new messages to the open push connections of their recipients.
+ * {@link InProcessMessageBroker} only reaches the connections of the current node;
+ * a multi-node deployment plugs in an implementation backed by a shared broker
+ * (Redis pub/sub, a message queue) that publishes to every node.
+ */
+public interface MessageBroker {
+    /**
+     * Delivers the message to every listener of the recipient.
+     */
+    void publish(long recipientId, MessageDto message);
+
+    /**
+     * Registers a listener of the messages received by the user.
+     * Listeners are called on the publishing thread and must not block.
+     */
+    Subscription subscribe(long userId, Consumer<MessageDto> listener);
+
+    interface Subscription {
+        void cancel();
+    }
+}
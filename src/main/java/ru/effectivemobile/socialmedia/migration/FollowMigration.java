@@ -0,0 +1,73 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+
+/**
+ * Moves the legacy mirrored {@code user_subscription} and {@code user_subscriber} tables
+ * into the single {@code follow} table and drops them. A follow present in either of the
+ * legacy tables is kept, so rows that drifted out of sync are reconciled by their union.
+ * Runs before the other migrations, which read the {@code follow} table.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "app.migration.follow.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class FollowMigration implements ApplicationRunner {
+    private final JdbcTemplate jdbcTemplate;
+    private final SocialGraphIndex socialGraphIndex;
+
+    public FollowMigration(JdbcTemplate jdbcTemplate, SocialGraphIndex socialGraphIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.socialGraphIndex = socialGraphIndex;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        boolean subscriptions = tableExists("user_subscription");
+        boolean subscribers = tableExists("user_subscriber");
+        if (!subscriptions && !subscribers) {
+            log.debug("No legacy subscription tables, nothing to migrate");
+            return;
+        }
+        int migrated = 0;
+        if (subscriptions) {
+            migrated += jdbcTemplate.update("INSERT IGNORE INTO follow (follower_id, followee_id, created_at) " +
+                    "SELECT user_id, subscription_id, CURRENT_TIMESTAMP FROM user_subscription");
+        }
+        if (subscribers) {
+            migrated += jdbcTemplate.update("INSERT IGNORE INTO follow (follower_id, followee_id, created_at) " +
+                    "SELECT subscriber_id, user_id, CURRENT_TIMESTAMP FROM user_subscriber");
+        }
+        if (subscriptions) {
+            jdbcTemplate.execute("DROP TABLE user_subscription");
+        }
+        if (subscribers) {
+            jdbcTemplate.execute("DROP TABLE user_subscriber");
+        }
+        log.info("{} follows have been moved to the follow table", migrated);
+        // The index was loaded from the follow table before the migration
+        socialGraphIndex.reload();
+    }
+
+    private boolean tableExists(String table) {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+                return tables.next();
+            }
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Drops AUTO_INCREMENT from the id columns of the tables whose ids are now assigned by
+ * {@link ru.effectivemobile.socialmedia.id.SnowflakeId}. Existing ids are kept: they are far below
+ * the generated ones, so the id order still follows the creation order.
+ * MySQL accepts explicit values in AUTO_INCREMENT columns, so the application works before
+ * this migration has run; it only removes the unused counter. Safe to run repeatedly.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.identity-columns.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class IdentityColumnMigration implements ApplicationRunner {
+    private static final List<String> TABLES = List.of("user", "role", "post", "message", "invitation");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdentityColumnMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            if (!"MySQL".equalsIgnoreCase(metaData.getDatabaseProductName())) {
+                log.debug("Identity columns are only migrated on MySQL");
+                return null;
+            }
+            try (Statement statement = connection.createStatement()) {
+                // The id columns are referenced by foreign keys of the same type
+                statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+                try {
+                    for (String table : TABLES) {
+                        if (isAutoIncrement(metaData, connection.getCatalog(), table)) {
+                            statement.execute("ALTER TABLE `" + table + "` MODIFY id BIGINT NOT NULL");
+                            log.info("AUTO_INCREMENT has been dropped from {}.id", table);
+                        }
+                    }
+                } finally {
+                    statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isAutoIncrement(DatabaseMetaData metaData, String catalog, String table)
+            throws SQLException {
+        try (ResultSet columns = metaData.getColumns(catalog, null, table, "id")) {
+            return columns.next() && "YES".equals(columns.getString("IS_AUTOINCREMENT"));
+        }
+    }
+}
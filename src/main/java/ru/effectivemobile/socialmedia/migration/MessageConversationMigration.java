@@ -0,0 +1,41 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the conversation key ({@code user_low}, {@code user_high}) of the messages stored
+ * before it was introduced, a batch at a time. Safe to run repeatedly.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.message-conversation.enabled", havingValue = "true",
+        matchIfMissing = true)
+@Slf4j
+public class MessageConversationMigration implements ApplicationRunner {
+    private static final int BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageConversationMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int migrated = 0;
+        int updated;
+        do {
+            updated = jdbcTemplate.update("UPDATE message " +
+                    "SET user_low = LEAST(sender, recipient), user_high = GREATEST(sender, recipient) " +
+                    "WHERE user_low IS NULL LIMIT " + BATCH_SIZE);
+            migrated += updated;
+        } while (updated > 0);
+        if (migrated > 0) {
+            log.info("Conversation key has been set for {} messages", migrated);
+        }
+    }
+}
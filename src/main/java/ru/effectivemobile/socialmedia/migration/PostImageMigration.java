@@ -0,0 +1,66 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.storage.BlobStore;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Moves images stored in the legacy {@code post.image} column into the blob store,
+ * a batch at a time, and clears the column. Safe to run repeatedly.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.post-images.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PostImageMigration implements ApplicationRunner {
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+
+    public PostImageMigration(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!legacyColumnExists()) {
+            log.debug("No legacy post.image column, nothing to migrate");
+            return;
+        }
+        int migrated = 0;
+        List<Long> batch;
+        do {
+            batch = jdbcTemplate.queryForList(
+                    "SELECT id FROM post WHERE image IS NOT NULL LIMIT " + BATCH_SIZE, Long.class);
+            for (Long id : batch) {
+                byte[] image = jdbcTemplate.queryForObject("SELECT image FROM post WHERE id = ?", byte[].class, id);
+                String hash = image == null || image.length == 0 ? null : blobStore.store(image);
+                jdbcTemplate.update("UPDATE post SET image_hash = ?, image = NULL WHERE id = ?", hash, id);
+            }
+            migrated += batch.size();
+        } while (!batch.isEmpty());
+        if (migrated > 0) {
+            log.info("Images of {} posts have been moved to the blob store", migrated);
+        }
+    }
+
+    private boolean legacyColumnExists() {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, "post", "image")) {
+                return columns.next();
+            }
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+}
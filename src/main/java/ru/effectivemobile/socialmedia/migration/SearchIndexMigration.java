@@ -0,0 +1,36 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.service.PostSearchService;
+
+/**
+ * Indexes the existing posts on the first start after the search index was introduced,
+ * or after its directory was lost.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.search-index.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SearchIndexMigration implements ApplicationRunner {
+    private final PostSearchService postSearchService;
+    private final int threads;
+    private final int batchSize;
+
+    public SearchIndexMigration(PostSearchService postSearchService,
+                                @Value("${app.search.rebuild-threads}") int threads,
+                                @Value("${app.search.rebuild-batch-size}") int batchSize) {
+        this.postSearchService = postSearchService;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.debug("Checking whether the search index has to be built");
+        postSearchService.rebuildIfEmpty(threads, batchSize);
+    }
+}
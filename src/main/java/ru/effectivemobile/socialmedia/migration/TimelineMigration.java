@@ -0,0 +1,28 @@
+package ru.effectivemobile.socialmedia.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.service.TimelineService;
+
+/**
+ * Populates the materialized timelines on the first start after the timeline table was introduced.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.timeline.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class TimelineMigration implements ApplicationRunner {
+    private final TimelineService timelineService;
+
+    public TimelineMigration(TimelineService timelineService) {
+        this.timelineService = timelineService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.debug("Checking whether the timeline table has to be populated");
+        timelineService.rebuildIfEmpty();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.effectivemobile.socialmedia.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+
+/**
+ * Directed follow edge: {@code follower} receives the posts of {@code followee}.
+ * The only stored copy of the relationship; both lookup directions are served by indexes.
+ * The primary key (follower_id, followee_id) covers "whom does the user follow",
+ * the reverse index (followee_id, follower_id) covers "who follows the user".
+ */
+@Getter
+@NoArgsConstructor
+@Entity
+@IdClass(FollowId.class)
+@Table(name = "follow",
+        indexes = @Index(name = "idx_follow_followee", columnList = "followee_id, follower_id"))
+public class Follow implements Persistable<FollowId> {
+    @Id
+    @Column(name = "follower_id")
+    private long followerId;
+
+    @Id
+    @Column(name = "followee_id")
+    private long followeeId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public Follow(long followerId, long followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+        this.createdAt = new Date();
+    }
+
+    @Override
+    public FollowId getId() {
+        return new FollowId(followerId, followeeId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    private void markNotNew() {
+        isNew = false;
+    }
+}
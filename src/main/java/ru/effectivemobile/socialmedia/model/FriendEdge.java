@@ -0,0 +1,51 @@
+package ru.effectivemobile.socialmedia.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Directed friendship edge: a friendship is stored as two edges, one per direction.
+ * Written and deleted one row at a time instead of rewriting the whole {@link User} collection.
+ */
+@Getter
+@NoArgsConstructor
+@Entity
+@IdClass(FriendEdgeId.class)
+@Table(name = "user_friend",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_friend", columnNames = {"user_id", "friend_id"}),
+        indexes = @Index(name = "idx_user_friend_reverse", columnList = "friend_id, user_id"))
+public class FriendEdge implements Persistable<FriendEdgeId> {
+    @Id
+    @Column(name = "user_id")
+    private long userId;
+
+    @Id
+    @Column(name = "friend_id")
+    private long friendId;
+
+    @Transient
+    private boolean isNew = true;
+
+    public FriendEdge(long userId, long friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+
+    @Override
+    public FriendEdgeId getId() {
+        return new FriendEdgeId(userId, friendId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    private void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.effectivemobile.socialmedia.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendEdgeId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private long userId;
+    private long friendId;
+}
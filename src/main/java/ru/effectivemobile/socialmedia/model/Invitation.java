@@ -2,13 +2,14 @@ package ru.effectivemobile.socialmedia.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import ru.effectivemobile.socialmedia.id.SnowflakeId;
 
 @Data
 @Entity
 @Table(name = "invitation")
 public class Invitation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private long id;
 
     @ManyToOne(cascade = CascadeType.MERGE)
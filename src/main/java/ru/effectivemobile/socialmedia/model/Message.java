@@ -2,13 +2,15 @@ package ru.effectivemobile.socialmedia.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import ru.effectivemobile.socialmedia.id.SnowflakeId;
 
 @Data
 @Entity
-@Table(name = "message")
+@Table(name = "message",
+        indexes = @Index(name = "idx_message_conversation", columnList = "user_low, user_high, id"))
 public class Message {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private long id;
 
     @Column(name = "text")
@@ -21,4 +23,18 @@ public class Message {
     @ManyToOne
     @JoinColumn(name = "recipient")
     private User recipient;
+
+    // Conversation key: the smaller and the greater of the sender and recipient ids,
+    // the same for both directions of the conversation
+    @Column(name = "user_low")
+    private Long userLow;
+
+    @Column(name = "user_high")
+    private Long userHigh;
+
+    @PrePersist
+    private void onCreate() {
+        userLow = Math.min(sender.getId(), recipient.getId());
+        userHigh = Math.max(sender.getId(), recipient.getId());
+    }
 }
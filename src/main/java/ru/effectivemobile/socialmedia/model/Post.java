@@ -3,6 +3,7 @@ package ru.effectivemobile.socialmedia.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import ru.effectivemobile.socialmedia.id.SnowflakeId;
 
 import java.util.Date;
 
@@ -11,7 +12,7 @@ import java.util.Date;
 @Table(name = "post")
 public class Post {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private long id;
 
     @Column(name = "text")
@@ -20,8 +21,9 @@ public class Post {
     @Column(name = "header")
     private String header;
 
-    @Column(name = "image")
-    private byte[] image;
+    // SHA-256 of the image in the blob store
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
 
     @ManyToOne
     @JoinColumn(name = "user", referencedColumnName = "id")
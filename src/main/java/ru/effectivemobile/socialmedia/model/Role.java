@@ -2,13 +2,19 @@ package ru.effectivemobile.socialmedia.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.effectivemobile.socialmedia.configuration.HibernateCacheConfig;
+import ru.effectivemobile.socialmedia.id.SnowflakeId;
 
 @Data
 @Entity
 @Table(name = "role")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.ROLES_REGION)
 public class Role {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private long id;
 
     @Enumerated(value = EnumType.STRING)
@@ -0,0 +1,42 @@
+package ru.effectivemobile.socialmedia.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * One row of a user's materialized home timeline: a post of a followed author,
+ * written on post creation so that the activity feed is a single indexed range read.
+ */
+@Data
+@Entity
+@IdClass(TimelineEntryId.class)
+@Table(name = "timeline", indexes = {
+        @Index(name = "idx_timeline_user_time", columnList = "user_id, creation_time, post_id"),
+        @Index(name = "idx_timeline_user_author", columnList = "user_id, author_id"),
+        @Index(name = "idx_timeline_post", columnList = "post_id")
+})
+public class TimelineEntry {
+    @Id
+    @Column(name = "user_id")
+    private long userId;
+
+    @Id
+    @Column(name = "post_id")
+    private long postId;
+
+    @Column(name = "author_id")
+    private long authorId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "creation_time")
+    private Date creationTime;
+
+    // No foreign key: entries of a removed post are cleaned up asynchronously
+    // and are already hidden by the inner join on read
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "post_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Post post;
+}
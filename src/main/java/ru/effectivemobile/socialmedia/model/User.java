@@ -5,17 +5,29 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import ru.effectivemobile.socialmedia.configuration.HibernateCacheConfig;
+import ru.effectivemobile.socialmedia.id.SnowflakeId;
+
 import java.util.List;
 import java.util.Set;
 
 @Data
 @Entity
 @Table(name = "user")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USERS_REGION)
+@NaturalIdCache(region = HibernateCacheConfig.USERNAMES_REGION)
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private long id;
 
+    @NaturalId
     @Column(name = "username", unique = true, length = 30)
     @NotNull
     @NotEmpty(message = "Username should not be empty")
@@ -33,24 +45,30 @@ public class User {
     private String password;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_ROLES_REGION)
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "role_id"))
     private Set<Role> roles;
 
+    // Read-only views of the follow and friend edges, which are written through their own entities.
+    // Not cached: the edges are also written with plain SQL
     @ManyToMany
-    @JoinTable(name = "user_subscriber",
-            joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "subscriber_id"))
+    @Immutable
+    @JoinTable(name = "follow",
+            joinColumns = @JoinColumn(name = "followee_id"),
+            inverseJoinColumns = @JoinColumn(name = "follower_id"))
     private List<User> subscribers;
 
     @ManyToMany
-    @JoinTable(name = "user_subscription",
-            joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "subscription_id"))
+    @Immutable
+    @JoinTable(name = "follow",
+            joinColumns = @JoinColumn(name = "follower_id"),
+            inverseJoinColumns = @JoinColumn(name = "followee_id"))
     private List<User> subscriptions;
 
     @ManyToMany
+    @Immutable
     @JoinTable(name = "user_friend",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "friend_id"))
@@ -0,0 +1,55 @@
+package ru.effectivemobile.socialmedia.reactive;
+
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
+import ru.effectivemobile.socialmedia.security.jwt.JwtUtils;
+import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
+
+/**
+ * Authenticates the requests of the reactive API by their JWT, as {@code AuthTokenFilter} does for the servlet API:
+ * one parse of the token, the principal built from its claims, revoked token versions rejected.
+ * Tokens without the user claims (issued by older versions) are rejected, as loading the user would block.
+ */
+@Slf4j
+public class JwtHandlerFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+    public static final String PRINCIPAL_ATTRIBUTE = JwtHandlerFilter.class.getName() + ".principal";
+
+    private final JwtUtils jwtUtils;
+    private final boolean versionCheck;
+
+    public JwtHandlerFilter(JwtUtils jwtUtils, boolean versionCheck) {
+        this.jwtUtils = jwtUtils;
+        this.versionCheck = versionCheck;
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String headerAuth = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        Claims claims = StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")
+                ? jwtUtils.parseJwtToken(headerAuth.substring(7)) : null;
+        UserDetailsImpl principal = claims != null ? jwtUtils.getUserDetailsFromClaims(claims) : null;
+        if (principal == null) {
+            return unauthorized();
+        }
+        if (versionCheck && !jwtUtils.isTokenVersionCurrent(claims, principal.getId())) {
+            log.warn("JWT token has been revoked for user: {}", principal.getUsername());
+            return unauthorized();
+        }
+        request.attributes().put(PRINCIPAL_ATTRIBUTE, principal);
+        return next.handle(request);
+    }
+
+    private static Mono<ServerResponse> unauthorized() {
+        return ServerResponse.status(HttpStatus.UNAUTHORIZED)
+                .bodyValue(new MessageResponse("Full authentication is required to access this resource"));
+    }
+}
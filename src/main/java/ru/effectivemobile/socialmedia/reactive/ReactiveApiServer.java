@@ -0,0 +1,57 @@
+package ru.effectivemobile.socialmedia.reactive;
+
+import io.r2dbc.pool.ConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Reactor Netty server of the reactive read API, on its own port next to the servlet container.
+ * Owns the R2DBC connection pool, closed after the server stops.
+ */
+@Slf4j
+public class ReactiveApiServer implements SmartLifecycle {
+    private final HttpHandler httpHandler;
+    private final ConnectionPool connectionPool;
+    private final int port;
+    private volatile DisposableServer server;
+
+    public ReactiveApiServer(HttpHandler httpHandler, ConnectionPool connectionPool, int port) {
+        this.httpHandler = httpHandler;
+        this.connectionPool = connectionPool;
+        this.port = port;
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        log.info("Reactive API started on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+        connectionPool.dispose();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the bound port, which differs from the configured one when that is 0
+     */
+    public int getPort() {
+        return server.port();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.effectivemobile.socialmedia.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
+import ru.effectivemobile.socialmedia.service.CursorCodec;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
+
+import java.util.function.Function;
+
+/**
+ * Handlers of the reactive read API. Every item is written as soon as its row arrives:
+ * as a line of {@code application/x-ndjson}, or as an event of {@code text/event-stream}
+ * whose id is the cursor to pass as {@code after} to continue after that item.
+ * <p>
+ * Rows are requested from the database in batches of {@code prefetch} as the items are written,
+ * so a slow client slows down its own query instead of filling the memory of the server.
+ */
+@Slf4j
+public class ReactiveReadHandler {
+    private static final ParameterizedTypeReference<ServerSentEvent<PostDto>> POST_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<ServerSentEvent<MessageDto>> MESSAGE_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final ReactiveReadRepository repository;
+    private final int maxItems;
+    private final int prefetch;
+
+    public ReactiveReadHandler(ReactiveReadRepository repository, int maxItems, int prefetch) {
+        this.repository = repository;
+        this.maxItems = maxItems;
+        this.prefetch = prefetch;
+    }
+
+    public Mono<ServerResponse> posts(ServerRequest request) {
+        String username = request.pathVariable("username");
+        log.info("New request from user: {} to stream posts of the user: {}", principal(request).getUsername(),
+                username);
+        return Mono.defer(() -> {
+                    long[] cursor = CursorCodec.decode(request.queryParam("after").orElse(null), 1);
+                    long beforeId = cursor == null ? Long.MAX_VALUE : cursor[0];
+                    int size = size(request, 10);
+                    return resolveId(request, username, "Failed to get the list of user's posts: Invalid username")
+                            .flatMap(userId -> stream(request, repository.findPosts(userId, beforeId, size),
+                                    post -> CursorCodec.encode(post.getId()), "post", PostDto.class, POST_EVENT));
+                })
+                .onErrorResume(BadRequestException.class, ReactiveReadHandler::badRequest);
+    }
+
+    public Mono<ServerResponse> activityFeed(ServerRequest request) {
+        String username = request.pathVariable("username");
+        log.info("New request from user: {} to stream the activity feed of the user: {}",
+                principal(request).getUsername(), username);
+        return Mono.defer(() -> {
+                    long[] cursor = CursorCodec.decode(request.queryParam("after").orElse(null), 2);
+                    int size = size(request, 10);
+                    return resolveId(request, username, "Failed to get user's activity feed: Invalid username")
+                            .flatMap(userId -> stream(request, repository.findFeed(userId, cursor, size),
+                                    post -> CursorCodec.encode(post.getCreationTime().getTime(), post.getId()),
+                                    "post", PostDto.class, POST_EVENT));
+                })
+                .onErrorResume(BadRequestException.class, ReactiveReadHandler::badRequest);
+    }
+
+    /**
+     * Messages are private: only their recipient may read them.
+     */
+    public Mono<ServerResponse> receivedMessages(ServerRequest request) {
+        String username = request.pathVariable("username");
+        UserDetailsImpl principal = principal(request);
+        log.info("New request from user: {} to stream the received messages of the user: {}",
+                principal.getUsername(), username);
+        if (!principal.getUsername().equals(username)) {
+            return ServerResponse.status(HttpStatus.FORBIDDEN)
+                    .bodyValue(new MessageResponse("Access to the messages of another user is denied"));
+        }
+        return Mono.defer(() -> {
+                    long[] cursor = CursorCodec.decode(request.queryParam("after").orElse(null), 1);
+                    long beforeId = cursor == null ? Long.MAX_VALUE : cursor[0];
+                    return stream(request,
+                            repository.findReceivedMessages(principal.getId(), beforeId, size(request, 20)),
+                            message -> CursorCodec.encode(message.getId()), "message", MessageDto.class,
+                            MESSAGE_EVENT);
+                })
+                .onErrorResume(BadRequestException.class, ReactiveReadHandler::badRequest);
+    }
+
+    private <T> Mono<ServerResponse> stream(ServerRequest request, Flux<T> items, Function<T, String> cursorOf,
+                                            String eventName, Class<T> type,
+                                            ParameterizedTypeReference<ServerSentEvent<T>> eventType) {
+        Flux<T> rows = items.limitRate(prefetch);
+        if (request.headers().accept().contains(MediaType.TEXT_EVENT_STREAM)) {
+            return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(rows.map(item -> ServerSentEvent.builder(item)
+                            .id(cursorOf.apply(item))
+                            .event(eventName)
+                            .build()), eventType);
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(rows, type);
+    }
+
+    /**
+     * Clients mostly read their own posts and feed: the id then comes from the token, without a query.
+     */
+    private Mono<Long> resolveId(ServerRequest request, String username, String error) {
+        UserDetailsImpl principal = principal(request);
+        if (principal.getUsername().equals(username)) {
+            return Mono.just(principal.getId());
+        }
+        return repository.findIdByUsername(username)
+                .switchIfEmpty(Mono.error(() -> new BadRequestException(error)));
+    }
+
+    private int size(ServerRequest request, int defaultSize) {
+        String size = request.queryParam("size").orElse(null);
+        if (size == null) {
+            return defaultSize;
+        }
+        try {
+            int value = Integer.parseInt(size);
+            if (value >= 1 && value <= maxItems) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new BadRequestException("The size must be between 1 and " + maxItems);
+    }
+
+    private static UserDetailsImpl principal(ServerRequest request) {
+        return (UserDetailsImpl) request.attributes().get(JwtHandlerFilter.PRINCIPAL_ATTRIBUTE);
+    }
+
+    private static Mono<ServerResponse> badRequest(BadRequestException e) {
+        log.warn(e.getMessage());
+        return ServerResponse.badRequest().bodyValue(new MessageResponse(e.getMessage()));
+    }
+}
@@ -0,0 +1,92 @@
+package ru.effectivemobile.socialmedia.reactive;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Read queries of the reactive API. The statements are the SQL of the JPQL projections in
+ * {@code PostRepository}, {@code TimelineRepository} and {@code MessageRepository}:
+ * every row is mapped to its DTO as it arrives and emitted on demand.
+ */
+public class ReactiveReadRepository {
+    private static final String SELECT_POST =
+            "SELECT p.id, u.username, p.header, p.text, p.image_hash, p.creation_time ";
+    private static final String ORDER_FEED = "ORDER BY t.creation_time DESC, t.post_id DESC LIMIT :limit";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveReadRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Long> findIdByUsername(String username) {
+        return databaseClient.sql("SELECT id FROM user WHERE username = :username")
+                .bind("username", username)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Posts of the user with an id below {@code beforeId}, newest first.
+     */
+    public Flux<PostDto> findPosts(long userId, long beforeId, int limit) {
+        return databaseClient.sql(SELECT_POST + "FROM post p JOIN user u ON u.id = p.user " +
+                        "WHERE p.user = :userId AND p.id < :beforeId ORDER BY p.id DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("beforeId", beforeId)
+                .bind("limit", limit)
+                .map(ReactiveReadRepository::post)
+                .all();
+    }
+
+    /**
+     * Timeline of the user, newest first, after the position ({@code creationTime}, {@code postId})
+     * or from the start if it is {@code null}.
+     */
+    public Flux<PostDto> findFeed(long userId, long[] after, int limit) {
+        String from = SELECT_POST + "FROM timeline t JOIN post p ON p.id = t.post_id JOIN user u ON u.id = p.user " +
+                "WHERE t.user_id = :userId ";
+        DatabaseClient.GenericExecuteSpec spec;
+        if (after == null) {
+            spec = databaseClient.sql(from + ORDER_FEED);
+        } else {
+            spec = databaseClient.sql(from + "AND (t.creation_time < :creationTime " +
+                            "OR (t.creation_time = :creationTime AND t.post_id < :postId)) " + ORDER_FEED)
+                    .bind("creationTime", new Timestamp(after[0]).toLocalDateTime())
+                    .bind("postId", after[1]);
+        }
+        return spec.bind("userId", userId)
+                .bind("limit", limit)
+                .map(ReactiveReadRepository::post)
+                .all();
+    }
+
+    /**
+     * Messages received by the user with an id below {@code beforeId}, newest first.
+     */
+    public Flux<MessageDto> findReceivedMessages(long recipientId, long beforeId, int limit) {
+        return databaseClient.sql("SELECT m.id, s.username, r.username, m.text FROM message m " +
+                        "JOIN user s ON s.id = m.sender JOIN user r ON r.id = m.recipient " +
+                        "WHERE m.recipient = :recipientId AND m.id < :beforeId ORDER BY m.id DESC LIMIT :limit")
+                .bind("recipientId", recipientId)
+                .bind("beforeId", beforeId)
+                .bind("limit", limit)
+                .map(row -> new MessageDto(row.get(0, Long.class), row.get(1, String.class),
+                        row.get(2, String.class), row.get(3, String.class)))
+                .all();
+    }
+
+    private static PostDto post(Readable row) {
+        LocalDateTime creationTime = row.get(5, LocalDateTime.class);
+        return new PostDto(row.get(0, Long.class), row.get(1, String.class), row.get(2, String.class),
+                row.get(3, String.class), row.get(4, String.class),
+                creationTime == null ? null : Timestamp.valueOf(creationTime));
+    }
+}
@@ -0,0 +1,16 @@
+package ru.effectivemobile.socialmedia.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.effectivemobile.socialmedia.model.Follow;
+import ru.effectivemobile.socialmedia.model.FollowId;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, FollowId> {
+    @Modifying
+    @Query("delete from Follow f where f.followerId = :followerId and f.followeeId = :followeeId")
+    int deleteEdge(@Param("followerId") long followerId, @Param("followeeId") long followeeId);
+}
@@ -0,0 +1,30 @@
+package ru.effectivemobile.socialmedia.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.effectivemobile.socialmedia.model.FriendEdge;
+import ru.effectivemobile.socialmedia.model.FriendEdgeId;
+import ru.effectivemobile.socialmedia.web.dto.UserDto;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface FriendEdgeRepository extends JpaRepository<FriendEdge, FriendEdgeId> {
+    /**
+     * Every friend of the user. The stream must be closed within the transaction.
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = MessageRepository.STREAM_FETCH_SIZE))
+    @Query("select new ru.effectivemobile.socialmedia.web.dto.UserDto(u.id, u.username, u.email) " +
+            "from FriendEdge e join User u on u.id = e.friendId where e.userId = :userId order by e.friendId")
+    Stream<UserDto> streamFriends(@Param("userId") long userId);
+
+    @Modifying
+    @Query("delete from FriendEdge e where e.userId = :userId and e.friendId = :friendId")
+    int deleteEdge(@Param("userId") long userId, @Param("friendId") long friendId);
+}
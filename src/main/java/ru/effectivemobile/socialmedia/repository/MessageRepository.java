@@ -1,14 +1,52 @@
 package ru.effectivemobile.socialmedia.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.effectivemobile.socialmedia.model.Message;
 import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    List<Message> getMessagesBySenderOrderByIdDesc(User sender);
-    List<Message> getMessagesByRecipientOrderByIdDesc(User recipient);
+    // Projection straight into the response shape: the names of both users by join, nothing managed
+    String SELECT_MESSAGE_DTO = "select new ru.effectivemobile.socialmedia.web.dto.MessageDto(" +
+            "m.id, s.username, r.username, m.text) from Message m join m.sender s join m.recipient r ";
+    // Rows fetched per round trip while a stream is read (a server-side cursor on MySQL, see useCursorFetch)
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Every message sent by the user, newest first. The stream must be closed within the transaction.
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_MESSAGE_DTO + "where s.id = :senderId order by m.id desc")
+    Stream<MessageDto> streamSentMessages(@Param("senderId") long senderId);
+
+    /**
+     * Every message received by the user, newest first. The stream must be closed within the transaction.
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_MESSAGE_DTO + "where r.id = :recipientId order by m.id desc")
+    Stream<MessageDto> streamReceivedMessages(@Param("recipientId") long recipientId);
+
+    List<Message> getMessagesBySenderAndIdLessThanOrderByIdDesc(User sender, long id, PageRequest pageRequest);
+
+    List<Message> getMessagesByRecipientAndIdLessThanOrderByIdDesc(User recipient, long id, PageRequest pageRequest);
+
+    List<Message> getMessagesByRecipientAndIdGreaterThanOrderByIdAsc(User recipient, long id, PageRequest pageRequest);
+
+    @Query("select m from Message m where m.userLow = :userLow and m.userHigh = :userHigh and m.id < :id " +
+            "order by m.id desc")
+    List<Message> findConversation(@Param("userLow") long userLow,
+                                   @Param("userHigh") long userHigh,
+                                   @Param("id") long id,
+                                   PageRequest pageRequest);
 }
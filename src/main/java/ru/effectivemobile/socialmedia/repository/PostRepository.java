@@ -1,17 +1,35 @@
 package ru.effectivemobile.socialmedia.repository;
 
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.effectivemobile.socialmedia.model.Post;
 import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findAllByUserOrderByIdDesc(User user, PageRequest pageRequest);
+    // Projection straight into the response shape: one row per post, the author name by join
+    String SELECT_POST_DTO = "select new ru.effectivemobile.socialmedia.web.dto.PostDto(" +
+            "p.id, u.username, p.header, p.text, p.imageHash, p.creationTime) ";
+
+    @Query(SELECT_POST_DTO + "from Post p join p.user u where u.id = :userId order by p.id desc")
+    List<PostDto> findDtosByUserId(@Param("userId") long userId, Pageable pageable);
+
+    @Query(SELECT_POST_DTO + "from Post p join p.user u where u.id = :userId and p.id < :id order by p.id desc")
+    List<PostDto> findDtosByUserIdAndIdLessThan(@Param("userId") long userId,
+                                                @Param("id") long id,
+                                                Pageable pageable);
+
+    @Query(SELECT_POST_DTO + "from Post p join p.user u where p.id in :ids")
+    List<PostDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
 
     List<Post> findAllByUserIn(List<User> subscribes, PageRequest pageRequest);
 
@@ -1,6 +1,9 @@
 package ru.effectivemobile.socialmedia.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import ru.effectivemobile.socialmedia.model.ERole;
 import ru.effectivemobile.socialmedia.model.Role;
@@ -9,5 +12,7 @@ import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    // Cached until the role table changes
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Role> findByName(ERole name);
 }
@@ -0,0 +1,84 @@
+package ru.effectivemobile.socialmedia.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.effectivemobile.socialmedia.model.TimelineEntry;
+import ru.effectivemobile.socialmedia.model.TimelineEntryId;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+    @Query(PostRepository.SELECT_POST_DTO + "from TimelineEntry t join t.post p join p.user u " +
+            "where t.userId = :userId order by t.creationTime desc, t.postId desc")
+    List<PostDto> findFeed(@Param("userId") long userId, Pageable pageable);
+
+    @Query(PostRepository.SELECT_POST_DTO + "from TimelineEntry t join t.post p join p.user u " +
+            "where t.userId = :userId " +
+            "and (t.creationTime < :creationTime or (t.creationTime = :creationTime and t.postId < :postId)) " +
+            "order by t.creationTime desc, t.postId desc")
+    List<PostDto> findFeedAfter(@Param("userId") long userId,
+                                @Param("creationTime") Date creationTime,
+                                @Param("postId") long postId,
+                             Pageable pageable);
+
+    @Query("select t.postId from TimelineEntry t")
+    List<Long> findAnyPostIds(Pageable pageable);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT IGNORE INTO timeline (user_id, post_id, author_id, creation_time) " +
+            "SELECT f.follower_id, :postId, :authorId, :creationTime FROM follow f " +
+            "WHERE f.followee_id = :authorId")
+    int fanOut(@Param("postId") long postId,
+               @Param("authorId") long authorId,
+               @Param("creationTime") Date creationTime);
+
+    /**
+     * Copies the latest posts of the author into the timeline of the user, if the user still follows the author:
+     * the follow events are handled in any order, an unfollow may have committed since.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT IGNORE INTO timeline (user_id, post_id, author_id, creation_time) " +
+            "SELECT :userId, p.id, p.user, p.creation_time FROM post p WHERE p.user = :authorId " +
+            "AND EXISTS (SELECT 1 FROM follow f WHERE f.follower_id = :userId AND f.followee_id = :authorId) " +
+            "ORDER BY p.id DESC LIMIT :limit")
+    int backfill(@Param("userId") long userId, @Param("authorId") long authorId, @Param("limit") int limit);
+
+    /**
+     * The last id of the next {@code limit} posts after the post {@code afterId}, {@code null} after the last post.
+     */
+    @Query(nativeQuery = true, value = "SELECT MAX(b.id) FROM " +
+            "(SELECT p.id FROM post p WHERE p.id > :afterId ORDER BY p.id LIMIT :limit) b")
+    Long findLastPostIdOfBatch(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * Copies the posts with ids in ({@code afterId}, {@code lastId}] into the timelines of their authors' followers,
+     * in a transaction of its own.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT IGNORE INTO timeline (user_id, post_id, author_id, creation_time) " +
+            "SELECT f.follower_id, p.id, p.user, p.creation_time FROM post p " +
+            "JOIN follow f ON f.followee_id = p.user WHERE p.id > :afterId AND p.id <= :lastId")
+    int rebuild(@Param("afterId") long afterId, @Param("lastId") long lastId);
+
+    @Modifying
+    @Query("delete from TimelineEntry t where t.postId = :postId")
+    int deleteByPostId(@Param("postId") long postId);
+
+    /**
+     * Removes the posts of the author from the timeline of the user, unless the user follows the author again:
+     * the follow events are handled in any order, a new follow may have committed since.
+     */
+    @Modifying
+    @Query("delete from TimelineEntry t where t.userId = :userId and t.authorId = :authorId " +
+            "and not exists (select f from Follow f where f.followerId = :userId and f.followeeId = :authorId)")
+    int deleteUnfollowed(@Param("userId") long userId, @Param("authorId") long authorId);
+}
@@ -0,0 +1,19 @@
+package ru.effectivemobile.socialmedia.repository;
+
+import ru.effectivemobile.socialmedia.model.User;
+
+import java.util.Optional;
+
+/**
+ * Lookups of users by their username, the natural id of {@link User}.
+ * They go through the natural id cache and the second-level cache,
+ * so a cached user is found without a query.
+ */
+public interface UserNaturalIdRepository {
+    Optional<User> findByUsername(String username);
+
+    /**
+     * Resolves the id without loading the user.
+     */
+    Optional<Long> findIdByUsername(String username);
+}
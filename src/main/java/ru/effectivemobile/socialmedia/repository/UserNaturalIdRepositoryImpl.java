@@ -0,0 +1,32 @@
+package ru.effectivemobile.socialmedia.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import ru.effectivemobile.socialmedia.model.User;
+
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+    }
+
+    @Override
+    public Optional<Long> findIdByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        User reference = entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).getReference(username);
+        return reference == null ? Optional.empty() : Optional.of(reference.getId());
+    }
+}
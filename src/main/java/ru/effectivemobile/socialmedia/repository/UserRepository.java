@@ -5,12 +5,9 @@ import org.springframework.stereotype.Repository;
 import ru.effectivemobile.socialmedia.model.User;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
-
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
     Boolean existsByUsername(String username);
 
     Boolean existsByEmail(String email);
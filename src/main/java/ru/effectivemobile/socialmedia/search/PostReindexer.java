@@ -0,0 +1,48 @@
+package ru.effectivemobile.socialmedia.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.effectivemobile.socialmedia.service.PostSearchService;
+
+/**
+ * Rebuilds the search index from the whole post table and stops the application:
+ * <pre>
+ * java -jar social-media.jar --spring.profiles.active=reindex --app.search.rebuild-threads=8
+ * </pre>
+ * The index directory is locked by its writer, so the command runs while the application using it is stopped.
+ */
+@Component
+@Profile("reindex")
+@Slf4j
+public class PostReindexer implements ApplicationRunner {
+    private final PostSearchService postSearchService;
+    private final ApplicationContext applicationContext;
+    private final int threads;
+    private final int batchSize;
+
+    public PostReindexer(PostSearchService postSearchService,
+                         ApplicationContext applicationContext,
+                         @Value("${app.search.rebuild-threads}") int threads,
+                         @Value("${app.search.rebuild-batch-size}") int batchSize) {
+        this.postSearchService = postSearchService;
+        this.applicationContext = applicationContext;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long begin = System.nanoTime();
+        long count = postSearchService.rebuild(threads, batchSize);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        log.info("Indexed {} posts in {} s ({} posts/s)", count, String.format("%.1f", seconds),
+                Math.round(count / Math.max(seconds, 0.001)));
+        System.exit(SpringApplication.exit(applicationContext));
+    }
+}
@@ -0,0 +1,234 @@
+package ru.effectivemobile.socialmedia.search;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text index of the posts: a Lucene index on the local disk ({@code app.search.index-dir}), ranked by BM25
+ * over the header and the text, with the author and the creation time as filters.
+ * Only the post id comes back from a search, the posts themselves are read from the database.
+ * <p>
+ * Changes are applied by one indexing thread in the order they are queued, so a post removed right after
+ * it was created never stays in the index. The queue is bounded ({@code app.search.queue-capacity}):
+ * when it is full the caller applies the change itself. Changes become searchable at the next refresh
+ * ({@code app.search.refresh-ms}, near-real-time readers on the uncommitted writer) and durable at the next
+ * commit ({@code app.search.commit-ms}). Changes lost in a crash before the commit are recovered by a rebuild.
+ */
+@Component
+@Slf4j
+public class PostSearchIndex {
+    private static final String UID = "uid";
+    private static final String ID = "id";
+    private static final String AUTHOR = "author";
+    private static final String TIME = "time";
+    private static final String HEADER = "header";
+    private static final String TEXT = "text";
+    // A match in the header counts twice as much as one in the text
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(HEADER, 2f, TEXT, 1f);
+    // Best match first, the newest post first among equal scores
+    private static final Sort RANKING = new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.LONG, true));
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ThreadPoolExecutor indexingQueue;
+
+    public PostSearchIndex(@Value("${app.search.index-dir}") String indexDir,
+                           @Value("${app.search.queue-capacity}") int queueCapacity) {
+        Path path = Paths.get(indexDir).toAbsolutePath().normalize();
+        try {
+            directory = FSDirectory.open(path);
+            writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+            searcherManager = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the search index: " + path, e);
+        }
+        indexingQueue = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "search-index"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("Search index opened: {}, {} posts", path, writer.getDocStats().numDocs);
+    }
+
+    /**
+     * Queues the indexing of a new or changed post.
+     */
+    public void enqueueIndex(long postId, long authorId, long creationTime, String header, String text) {
+        indexingQueue.execute(() -> apply(() -> index(postId, authorId, creationTime, header, text)));
+    }
+
+    /**
+     * Queues the removal of a post.
+     */
+    public void enqueueRemove(long postId) {
+        indexingQueue.execute(() -> apply(() -> writer.deleteDocuments(new Term(UID, Long.toString(postId)))));
+    }
+
+    /**
+     * Adds or replaces the post right away, on the calling thread. Safe to call from several threads.
+     */
+    public void index(long postId, long authorId, long creationTime, String header, String text) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(UID, Long.toString(postId), Field.Store.NO));
+        document.add(new NumericDocValuesField(ID, postId));
+        document.add(new LongPoint(AUTHOR, authorId));
+        document.add(new LongPoint(TIME, creationTime));
+        if (header != null) {
+            document.add(new TextField(HEADER, header, Field.Store.NO));
+        }
+        if (text != null) {
+            document.add(new TextField(TEXT, text, Field.Store.NO));
+        }
+        writer.updateDocument(new Term(UID, Long.toString(postId)), document);
+    }
+
+    /**
+     * Searches the posts matching all words of the query, best match first.
+     * The query accepts the simple syntax: {@code "phrases"}, {@code -excluded}, {@code prefix*}, {@code a | b}.
+     *
+     * @param authorId only posts of this author, if not {@code null}
+     * @param from     only posts created at or after this time (epoch millis), if not {@code null}
+     * @param to       only posts created before this time (epoch millis), if not {@code null}
+     * @param after    the last hit of the previous page, {@code null} for the first page.
+     *                 Scores move a little as the index changes, so a page continued after a refresh
+     *                 may skip or repeat a post near its boundary
+     * @param limit    maximal number of hits
+     */
+    public List<Hit> search(String queryText, Long authorId, Long from, Long to, Hit after, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(parser.parse(queryText), BooleanClause.Occur.MUST);
+        if (authorId != null) {
+            query.add(LongPoint.newExactQuery(AUTHOR, authorId), BooleanClause.Occur.FILTER);
+        }
+        if (from != null || to != null) {
+            query.add(LongPoint.newRangeQuery(TIME, from == null ? Long.MIN_VALUE : from,
+                    to == null ? Long.MAX_VALUE : to - 1), BooleanClause.Occur.FILTER);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopFieldDocs topDocs = after == null
+                        ? searcher.search(query.build(), limit, RANKING, true)
+                        : searcher.searchAfter(toFieldDoc(after, searcher), query.build(), limit, RANKING, true);
+                List<Hit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    FieldDoc fieldDoc = (FieldDoc) scoreDoc;
+                    hits.add(new Hit((Long) fieldDoc.fields[1], (Float) fieldDoc.fields[0]));
+                }
+                return hits;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to search the posts", e);
+        }
+    }
+
+    public int count() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Removes every post, for a rebuild. The posts stay searchable until the next refresh.
+     */
+    public void deleteAll() throws IOException {
+        writer.deleteAll();
+    }
+
+    /**
+     * Makes the changes durable and searchable right away.
+     */
+    public void commit() throws IOException {
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.refresh-ms}")
+    public void refresh() {
+        apply(searcherManager::maybeRefresh);
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.commit-ms}")
+    public void commitChanges() {
+        if (writer.hasUncommittedChanges()) {
+            apply(writer::commit);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        indexingQueue.shutdown();
+        if (!indexingQueue.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Search index closed with {} queued changes", indexingQueue.getQueue().size());
+        }
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private static FieldDoc toFieldDoc(Hit hit, IndexSearcher searcher) {
+        // The ids are unique, so only the last hit itself ties with it. Documents tying with the position
+        // are skipped up to its doc number: the last one of the reader skips the last hit wherever it is now
+        return new FieldDoc(Math.max(searcher.getIndexReader().maxDoc() - 1, 0), hit.score(),
+                new Object[]{hit.score(), hit.postId()});
+    }
+
+    private static void apply(IndexOperation operation) {
+        try {
+            operation.run();
+        } catch (IOException | RuntimeException e) {
+            log.error("Search index update failed: {}", e.getMessage());
+        }
+    }
+
+    private interface IndexOperation {
+        void run() throws IOException;
+    }
+
+    /**
+     * A matching post and its score, which together position the next page.
+     */
+    public record Hit(long postId, float score) {
+    }
+}
@@ -0,0 +1,388 @@
+package ru.effectivemobile.socialmedia.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.web.dto.UserSuggestionDto;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory prefix index of the usernames for typeahead, ranked by follower count.
+ * <p>
+ * The usernames are kept sorted in one UTF-8 byte array with an offset and an id per user, so a prefix
+ * is a range found by two binary searches. Matching ignores the case of ASCII letters only.
+ * Ranges of up to {@value #SCAN_LIMIT} users are ranked by their current follower counts; larger ones
+ * take their candidates from a max segment tree over the follower counts of the last merge,
+ * so the top of a one-letter prefix costs O(k log n) instead of a scan.
+ * <p>
+ * The sorted arrays are immutable. Registrations go to a small sorted map that the searches read as well,
+ * and are merged into new arrays every {@code app.users.search.refresh-ms}, which also refreshes
+ * the follower counts of the tree.
+ * <p>
+ * Memory: the username bytes plus 20 bytes per user (offset, id and two tree nodes), about
+ * 30 bytes per user with 10-character names; {@link #memoryBytes()} is logged after loading.
+ */
+@Service
+@Slf4j
+public class UsernameIndex implements SmartInitializingSingleton {
+    static final int SCAN_LIMIT = 1024;
+    private static final int FETCH_SIZE = 10_000;
+    private static final long PENDING_ENTRY_BYTES = 96L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SocialGraphIndex socialGraphIndex;
+
+    private volatile Snapshot snapshot = Snapshot.build(new Entry[0], id -> 0);
+    // Registered since the last merge, keyed by the UTF-8 username
+    private final ConcurrentSkipListMap<byte[], Long> pending = new ConcurrentSkipListMap<>(UsernameIndex::compare);
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    public UsernameIndex(DataSource dataSource, SocialGraphIndex socialGraphIndex) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.socialGraphIndex = socialGraphIndex;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the database.
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        jdbcTemplate.query("SELECT u.id, u.username FROM user u", resultSet -> {
+            entries.add(new Entry(resultSet.getString(2).getBytes(StandardCharsets.UTF_8), resultSet.getLong(1)));
+        });
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.parallelSort(sorted, Entry.ORDER);
+        mergeLock.lock();
+        try {
+            snapshot = Snapshot.build(sorted, socialGraphIndex::followerCount);
+            pending.clear();
+        } finally {
+            mergeLock.unlock();
+        }
+        log.info("Username index loaded in {} ms: {} users, {} bytes",
+                System.currentTimeMillis() - start, sorted.length, memoryBytes());
+    }
+
+    /**
+     * Adds a registered user, searchable right away.
+     */
+    public void add(long userId, String username) {
+        pending.put(username.getBytes(StandardCharsets.UTF_8), userId);
+    }
+
+    /**
+     * Merges the registrations into the sorted arrays and refreshes the follower counts of the tree.
+     */
+    @Scheduled(fixedDelayString = "${app.users.search.refresh-ms}")
+    public void merge() {
+        mergeLock.lock();
+        try {
+            // In the key order; registered meanwhile stay pending until the next merge
+            List<Entry> added = new ArrayList<>();
+            pending.forEach((name, id) -> added.add(new Entry(name, id)));
+            snapshot = snapshot.merge(added, socialGraphIndex::followerCount);
+            added.forEach(entry -> pending.remove(entry.name(), entry.id()));
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} users whose username starts with the prefix, the most followed first.
+     */
+    public List<UserSuggestionDto> search(String prefix, int limit) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        Snapshot current = snapshot;
+        int from = current.lowerBound(key, false);
+        int to = current.lowerBound(key, true);
+
+        List<UserSuggestionDto> candidates = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        int[] positions = to - from <= SCAN_LIMIT
+                ? topScanned(current, from, to, limit)
+                : current.topPositions(from, to, limit);
+        for (int position : positions) {
+            addCandidate(candidates, seen, current.id(position), current.name(position));
+        }
+        for (Map.Entry<byte[], Long> entry : pending.tailMap(lowestVariant(key)).entrySet()) {
+            if (!startsWith(entry.getKey(), key)) {
+                break;
+            }
+            addCandidate(candidates, seen, entry.getValue(), new String(entry.getKey(), StandardCharsets.UTF_8));
+        }
+        candidates.sort(Comparator.comparingInt(UserSuggestionDto::getFollowers).reversed()
+                .thenComparing(UserSuggestionDto::getUsername));
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    public int size() {
+        return snapshot.size() + pending.size();
+    }
+
+    public long memoryBytes() {
+        return snapshot.memoryBytes() + pending.size() * PENDING_ENTRY_BYTES;
+    }
+
+    /**
+     * The positions of the {@code limit} most followed users of the range by their current counts,
+     * without decoding the names of the others.
+     */
+    private int[] topScanned(Snapshot current, int from, int to, int limit) {
+        // The count descending in the high half, the position in the low one
+        long[] ranked = new long[to - from];
+        for (int position = from; position < to; position++) {
+            int followers = socialGraphIndex.followerCount(current.id(position));
+            ranked[position - from] = ((long) (Integer.MAX_VALUE - followers) << 32) | position;
+        }
+        Arrays.sort(ranked);
+        int[] positions = new int[Math.min(limit, ranked.length)];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (int) ranked[i];
+        }
+        return positions;
+    }
+
+    private void addCandidate(List<UserSuggestionDto> candidates, Set<Long> seen, long id, String username) {
+        // A user merged while this search read the pending map is found twice
+        if (seen.add(id)) {
+            candidates.add(new UserSuggestionDto(id, username, socialGraphIndex.followerCount(id)));
+        }
+    }
+
+    /**
+     * The name sorting first among the ones equal to it but for the case of ASCII letters.
+     */
+    private static byte[] lowestVariant(byte[] name) {
+        byte[] variant = name.clone();
+        for (int i = 0; i < variant.length; i++) {
+            if (variant[i] >= 'a' && variant[i] <= 'z') {
+                variant[i] -= 'a' - 'A';
+            }
+        }
+        return variant;
+    }
+
+    private static int fold(byte b) {
+        int value = b & 0xFF;
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+
+    /**
+     * Unsigned byte order with ASCII letters folded to lower case.
+     * With {@code prefixOnly}, {@code a} is cut to the length of {@code b} first.
+     */
+    private static int compare(byte[] a, int aFrom, int aTo, byte[] b, boolean prefixOnly) {
+        int aLength = aTo - aFrom;
+        int length = Math.min(aLength, b.length);
+        for (int i = 0; i < length; i++) {
+            int difference = fold(a[aFrom + i]) - fold(b[i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return prefixOnly && aLength >= b.length ? 0 : aLength - b.length;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int result = compare(a, 0, a.length, b, false);
+        // Names equal but for the case stay distinct keys
+        return result != 0 ? result : Arrays.compareUnsigned(a, b);
+    }
+
+    private static boolean startsWith(byte[] name, byte[] prefix) {
+        return compare(name, 0, name.length, prefix, true) == 0;
+    }
+
+    private record Entry(byte[] name, long id) {
+        static final Comparator<Entry> ORDER = (a, b) -> compare(a.name, b.name);
+    }
+
+    private interface FollowerCounts {
+        int of(long userId);
+    }
+
+    /**
+     * Sorted usernames and the max segment tree of their follower counts, never modified once built.
+     */
+    private static final class Snapshot {
+        private final byte[] names;
+        private final int[] offsets;
+        private final long[] ids;
+        // Leaves at [size, 2 * size), node i is the maximum of nodes 2i and 2i + 1
+        private final int[] tree;
+
+        private Snapshot(byte[] names, int[] offsets, long[] ids, int[] tree) {
+            this.names = names;
+            this.offsets = offsets;
+            this.ids = ids;
+            this.tree = tree;
+        }
+
+        static Snapshot build(Entry[] sorted, FollowerCounts followerCounts) {
+            int length = 0;
+            for (Entry entry : sorted) {
+                length += entry.name.length;
+            }
+            byte[] names = new byte[length];
+            int[] offsets = new int[sorted.length + 1];
+            long[] ids = new long[sorted.length];
+            int offset = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                System.arraycopy(sorted[i].name, 0, names, offset, sorted[i].name.length);
+                offsets[i] = offset;
+                offset += sorted[i].name.length;
+                ids[i] = sorted[i].id;
+            }
+            offsets[sorted.length] = offset;
+            return new Snapshot(names, offsets, ids, tree(ids, followerCounts));
+        }
+
+        /**
+         * Returns a snapshot with the sorted entries added, and the follower counts refreshed.
+         */
+        Snapshot merge(List<Entry> added, FollowerCounts followerCounts) {
+            int length = names.length;
+            for (Entry entry : added) {
+                length += entry.name.length;
+            }
+            int size = ids.length + added.size();
+            byte[] mergedNames = new byte[length];
+            int[] mergedOffsets = new int[size + 1];
+            long[] mergedIds = new long[size];
+            int offset = 0;
+            int position = 0;
+            int count = 0;
+            for (Entry entry : added) {
+                while (position < ids.length && compareAt(position, entry.name) < 0) {
+                    offset = copy(position++, mergedNames, mergedOffsets, mergedIds, count++, offset);
+                }
+                System.arraycopy(entry.name, 0, mergedNames, offset, entry.name.length);
+                mergedOffsets[count] = offset;
+                mergedIds[count++] = entry.id;
+                offset += entry.name.length;
+            }
+            while (position < ids.length) {
+                offset = copy(position++, mergedNames, mergedOffsets, mergedIds, count++, offset);
+            }
+            mergedOffsets[size] = offset;
+            return new Snapshot(mergedNames, mergedOffsets, mergedIds, tree(mergedIds, followerCounts));
+        }
+
+        private int compareAt(int position, byte[] name) {
+            int result = compare(names, offsets[position], offsets[position + 1], name, false);
+            return result != 0 ? result
+                    : Arrays.compareUnsigned(names, offsets[position], offsets[position + 1], name, 0, name.length);
+        }
+
+        private int copy(int position, byte[] toNames, int[] toOffsets, long[] toIds, int index, int offset) {
+            int length = offsets[position + 1] - offsets[position];
+            System.arraycopy(names, offsets[position], toNames, offset, length);
+            toOffsets[index] = offset;
+            toIds[index] = ids[position];
+            return offset + length;
+        }
+
+        private static int[] tree(long[] ids, FollowerCounts followerCounts) {
+            int size = ids.length;
+            int[] tree = new int[2 * size];
+            for (int i = 0; i < size; i++) {
+                tree[size + i] = followerCounts.of(ids[i]);
+            }
+            for (int i = size - 1; i > 0; i--) {
+                tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+            }
+            return tree;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        long id(int position) {
+            return ids[position];
+        }
+
+        String name(int position) {
+            return new String(names, offsets[position], offsets[position + 1] - offsets[position],
+                    StandardCharsets.UTF_8);
+        }
+
+        /**
+         * First position whose name, cut to the length of the prefix, is not below it ({@code upper}: above it).
+         */
+        int lowerBound(byte[] prefix, boolean upper) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int result = compare(names, offsets[middle], offsets[middle + 1], prefix, true);
+                if (result < 0 || upper && result == 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Positions of the {@code limit} most followed users in [from, to): best-first descent
+         * from the tree nodes that cover the range.
+         */
+        int[] topPositions(int from, int to, int limit) {
+            int size = ids.length;
+            // Follower count in the high half, node in the low half: the largest count comes out first
+            PriorityQueue<Long> queue = new PriorityQueue<>(Comparator.reverseOrder());
+            for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    queue.add(node(low++));
+                }
+                if ((high & 1) == 1) {
+                    queue.add(node(--high));
+                }
+            }
+            int[] positions = new int[Math.min(limit, to - from)];
+            int count = 0;
+            while (count < positions.length && !queue.isEmpty()) {
+                int node = (int) queue.poll().longValue();
+                if (node >= size) {
+                    positions[count++] = node - size;
+                } else {
+                    queue.add(node(2 * node));
+                    queue.add(node(2 * node + 1));
+                }
+            }
+            return positions;
+        }
+
+        private long node(int node) {
+            return (long) tree[node] << 32 | node;
+        }
+
+        long memoryBytes() {
+            return names.length + 4L * offsets.length + 8L * ids.length + 4L * tree.length;
+        }
+    }
+}
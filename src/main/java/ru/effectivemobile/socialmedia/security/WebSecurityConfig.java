@@ -1,8 +1,11 @@
 package ru.effectivemobile.socialmedia.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -28,6 +31,7 @@ import ru.effectivemobile.socialmedia.security.jwt.AuthTokenFilter;
 public class WebSecurityConfig {
     UserDetailsService userDetailsService;
     private AuthEntryPointJwt unauthorizedHandler;
+    private MeterRegistry meterRegistry;
 
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
@@ -51,7 +55,7 @@ public class WebSecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry);
     }
 
     @Bean
@@ -60,13 +64,21 @@ public class WebSecurityConfig {
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth ->
-                        auth.requestMatchers("/api/auth/**").permitAll()
+                        // The request was authorized before it was handed over to the async processing
+                        auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                                .requestMatchers("/api/auth/**").permitAll()
                                 .requestMatchers("/api/test/**").permitAll()
                                 //temporary
                                 .requestMatchers("/api/user/**").authenticated()
                                 .requestMatchers("/api/posts/**").authenticated()
                                 .requestMatchers("/api/messages/**").authenticated()
+                                .requestMatchers("/api/search/**").authenticated()
                                 .requestMatchers("/swagger-ui/**").permitAll()
+                                // Loaded by <img> tags, which send no token: the content hash is the capability
+                                .requestMatchers(HttpMethod.GET, "/api/images/**").permitAll()
+                                .requestMatchers(HttpMethod.HEAD, "/api/images/**").permitAll()
+                                // Scraped by Prometheus and probed by the orchestrator without a token
+                                .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                                 .anyRequest().authenticated()
                 );
 
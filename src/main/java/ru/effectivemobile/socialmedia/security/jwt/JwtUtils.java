@@ -3,58 +3,152 @@ package ru.effectivemobile.socialmedia.security.jwt;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
 
 import java.security.Key;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    public static final String CLAIM_ID = "id";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_VERSION = "ver";
+
     @Value("${app.jwtSecret}")
     private String jwtSecret;
 
     @Value("${app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Built once: decoding the secret and creating the key on every call is pure overhead
+    private Key key;
+    private JwtParser parser;
+    // One timer per validation result, registered once instead of looked up on every request
+    private Timer validTimer;
+    private Timer malformedTimer;
+    private Timer expiredTimer;
+    private Timer unsupportedTimer;
+    private Timer badSignatureTimer;
+    private Timer emptyTimer;
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder().setSigningKey(key).build();
+        validTimer = validationTimer("valid");
+        malformedTimer = validationTimer("malformed");
+        expiredTimer = validationTimer("expired");
+        unsupportedTimer = validationTimer("unsupported");
+        badSignatureTimer = validationTimer("bad_signature");
+        emptyTimer = validationTimer("empty");
+    }
+
+    private Timer validationTimer(String result) {
+        return Timer.builder("app.jwt.validation")
+                .description("Time spent verifying the signature and expiration of a token")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     public String generateJwtToken(Authentication authentication) {
 
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
 
         return Jwts.builder().setSubject((userPrincipal.getUsername())).setIssuedAt(new Date())
+                .claim(CLAIM_ID, userPrincipal.getId())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_VERSION, tokenVersionRegistry.currentVersion(userPrincipal.getId()))
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS512).compact();
+                .signWith(key, SignatureAlgorithm.HS512).compact();
     }
 
     public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken) != null;
+    }
+
+    /**
+     * Verifies the token signature and expiration once and returns its claims,
+     * or {@code null} if the token is not valid.
+     */
+    public Claims parseJwtToken(String authToken) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Timer timer = validTimer;
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
+            return parser.parseClaimsJws(authToken).getBody();
         } catch (MalformedJwtException e) {
+            timer = malformedTimer;
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
+            timer = expiredTimer;
             logger.error("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
+            timer = unsupportedTimer;
             logger.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (SecurityException e) {
+            timer = badSignatureTimer;
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
+            timer = emptyTimer;
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } finally {
+            sample.stop(timer);
         }
 
-        return false;
+        return null;
     }
 
     public String getUserNameFromJwtToken(String jwt) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(jwt).getBody().getSubject();
+        return parser.parseClaimsJws(jwt).getBody().getSubject();
+    }
+
+    /**
+     * Builds the principal from the claims of a token issued by {@link #generateJwtToken},
+     * or returns {@code null} for tokens without user id and roles (issued by older versions).
+     */
+    public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+        Number id = claims.get(CLAIM_ID, Number.class);
+        Object roles = claims.get(CLAIM_ROLES);
+        if (id == null || !(roles instanceof List<?> roleList)) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roleList.size());
+        for (Object role : roleList) {
+            authorities.add(new SimpleGrantedAuthority(String.valueOf(role)));
+        }
+        return new UserDetailsImpl(id.longValue(), claims.getSubject(), null, null, authorities);
+    }
+
+    /**
+     * Checks the token version against the revocation registry. Tokens without a version
+     * were issued before versions existed and are accepted.
+     */
+    public boolean isTokenVersionCurrent(Claims claims, long userId) {
+        Number version = claims.get(CLAIM_VERSION, Number.class);
+        return version == null || tokenVersionRegistry.isCurrent(userId, version.intValue());
     }
 }
@@ -0,0 +1,28 @@
+package ru.effectivemobile.socialmedia.security.jwt;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory token versions per user. Tokens carry the version current at issue time;
+ * bumping the version revokes every token issued before. Versions are kept only
+ * in this node's memory: after a restart all tokens are accepted again until they expire.
+ */
+@Component
+public class TokenVersionRegistry {
+    private final ConcurrentMap<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    public int currentVersion(long userId) {
+        return versions.getOrDefault(userId, 0);
+    }
+
+    public void revokeAll(long userId) {
+        versions.merge(userId, 1, Integer::sum);
+    }
+
+    public boolean isCurrent(long userId, int tokenVersion) {
+        return tokenVersion >= currentVersion(userId);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.effectivemobile.socialmedia.service;
+
+import org.springframework.http.CacheControl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version stamps of the listings clients poll (posts of a user, activity feed, friends, received messages),
+ * used as ETags so an unchanged listing is answered with 304 before it is read from the database.
+ * <p>
+ * The versions are counters bumped by the services after their transaction commits, and read
+ * before the listing, so a response never carries a stamp newer than its content.
+ * Counters are striped by user id: users sharing a stripe only invalidate each other's ETags.
+ * <p>
+ * Versions are kept only in this node's memory. The ETags start with a random epoch of the process,
+ * so the ETags issued before a restart never match again.
+ * They are weak: the same content may be sent gzip-compressed or not (Tomcat does not compress
+ * responses with a strong ETag).
+ */
+@Service
+public class ContentVersionService {
+    /**
+     * Clients may store the listings, but must revalidate them with the ETag on every use.
+     */
+    public static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private static final int STRIPES = 1 << 16;
+
+    private final UserRepository userRepository;
+    private final SocialGraphIndex socialGraphIndex;
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLongArray posts = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray graph = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray messages = new AtomicLongArray(STRIPES);
+
+    public ContentVersionService(UserRepository userRepository, SocialGraphIndex socialGraphIndex) {
+        this.userRepository = userRepository;
+        this.socialGraphIndex = socialGraphIndex;
+    }
+
+    /**
+     * @return the ETag of the posts of the user, or null if the username is unknown
+     */
+    public String postsTag(String username) {
+        Long userId = resolveId(username);
+        return userId == null ? null : tag("p" + Long.toString(posts.get(stripe(userId)), 36));
+    }
+
+    /**
+     * The feed changes with the subscriptions of the user and with the posts of every followee.
+     * Counters only grow, so the sum over the followees changes whenever one of them does.
+     *
+     * @return the ETag of the activity feed of the user, or null if the username is unknown
+     */
+    public String feedTag(String username) {
+        Long userId = resolveId(username);
+        if (userId == null) {
+            return null;
+        }
+        long followeesVersion = 0;
+        for (long followeeId : socialGraphIndex.followingIds(userId)) {
+            followeesVersion += posts.get(stripe(followeeId));
+        }
+        return tag("f" + Long.toString(graph.get(stripe(userId)), 36) + "." + Long.toString(followeesVersion, 36));
+    }
+
+    /**
+     * @return the ETag of the friends of the user, or null if the username is unknown
+     */
+    public String friendsTag(String username) {
+        Long userId = resolveId(username);
+        return userId == null ? null : tag("g" + Long.toString(graph.get(stripe(userId)), 36));
+    }
+
+    /**
+     * @return the ETag of the messages received by the user, or null if the username is unknown
+     */
+    public String receivedMessagesTag(String username) {
+        Long userId = resolveId(username);
+        return userId == null ? null : tag("m" + Long.toString(messages.get(stripe(userId)), 36));
+    }
+
+    public void postsChanged(long authorId) {
+        afterCommit(() -> posts.incrementAndGet(stripe(authorId)));
+    }
+
+    /**
+     * Subscriptions or friends of the user have changed.
+     */
+    public void graphChanged(long userId) {
+        afterCommit(() -> graph.incrementAndGet(stripe(userId)));
+    }
+
+    public void messagesReceived(long recipientId) {
+        afterCommit(() -> messages.incrementAndGet(stripe(recipientId)));
+    }
+
+    private String tag(String version) {
+        return "W/\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * Clients mostly read their own listings: the id then comes from the token, without a query.
+     */
+    private Long resolveId(String username) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl principal
+                && principal.getUsername().equals(username)) {
+            return principal.getId();
+        }
+        return userRepository.findIdByUsername(username).orElse(null);
+    }
+
+    private static int stripe(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 48);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.effectivemobile.socialmedia.service;
+
+import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes keyset pagination positions into opaque URL-safe cursors and back.
+ */
+public final class CursorCodec {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String SEPARATOR = ":";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(long... keys) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(builder.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the keys stored in the cursor, or {@code null} for an empty cursor which denotes the first page.
+     */
+    public static long[] decode(String cursor, int keyCount) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] parts = decoded.split(SEPARATOR);
+            if (parts.length != keyCount) {
+                throw new BadRequestException("Invalid pagination cursor");
+            }
+            long[] keys = new long[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = Long.parseLong(parts[i]);
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid pagination cursor");
+        }
+    }
+
+    /**
+     * Rejects a page size out of 1..{@value #MAX_PAGE_SIZE}, before it becomes the limit of a query.
+     */
+    public static void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Invalid page size: must be from 1 to " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of {@code size + 1}:
+     * the extra row only signals that a next page exists.
+     */
+    public static <E, T> PageResponse<T> toPage(List<E> rows, int size,
+                                                Function<E, T> mapper, Function<E, String> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<E> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(pageRows.get(size - 1)) : null;
+        return new PageResponse<>(pageRows.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+}
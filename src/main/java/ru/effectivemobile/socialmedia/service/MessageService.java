@@ -1,27 +1,38 @@
 package ru.effectivemobile.socialmedia.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.effectivemobile.socialmedia.event.MessageSentEvent;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
 import ru.effectivemobile.socialmedia.exception.MessageErrorException;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
 import ru.effectivemobile.socialmedia.model.Message;
 import ru.effectivemobile.socialmedia.model.User;
 import ru.effectivemobile.socialmedia.repository.MessageRepository;
 import ru.effectivemobile.socialmedia.repository.UserRepository;
 import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed("app.service")
 @Transactional
 @AllArgsConstructor
 @Slf4j
 public class MessageService {
     private UserRepository userRepository;
     private MessageRepository messageRepository;
+    private SocialGraphIndex socialGraphIndex;
+    private ApplicationEventPublisher eventPublisher;
+    private ContentVersionService contentVersionService;
 
     public MessageDto sendMessage(String senderUsername, String recipientUsername, MessageDto messageDto) {
         log.debug("Database query to save a new message: sender-{}, recipient-{}, message text-{}",
@@ -30,7 +41,7 @@ public class MessageService {
                 () -> new BadRequestException("Failed to send message: Invalid sender username"));
         User recipient = userRepository.findByUsername(recipientUsername).orElseThrow(
                 () -> new BadRequestException("Failed to send message: Invalid recipient username"));
-        if (!sender.getFriends().contains(recipient)) {
+        if (!socialGraphIndex.areFriends(sender.getId(), recipient.getId())) {
             throw new MessageErrorException("Failed to send message: Users are not friends");
         }
         Message message = new Message();
@@ -38,25 +49,88 @@ public class MessageService {
         message.setRecipient(recipient);
         message.setText(messageDto.getText());
         messageRepository.save(message);
+        contentVersionService.messagesReceived(recipient.getId());
         log.debug("Message has been saved to the database: {}", message);
-        return MessageDto.build(message);
+        MessageDto sentMessage = MessageDto.build(message);
+        eventPublisher.publishEvent(new MessageSentEvent(recipient.getId(), sentMessage));
+        return sentMessage;
     }
 
-    public List<MessageDto> getSentMessages(String username) {
-        log.debug("Database query to get list of sent messages from user: {}", username);
+    /**
+     * Resolves the user of a message list before the list is streamed,
+     * while an invalid username can still be answered with an error status.
+     */
+    @Transactional(readOnly = true)
+    public long getUserId(String username) {
+        return userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new BadRequestException("Failed to get list of messages: Invalid username"));
+    }
+
+    /**
+     * Passes every message sent by the user to the action, newest first, as the rows are fetched:
+     * the messages are never held in memory together.
+     */
+    @Transactional(readOnly = true)
+    public void streamSentMessages(long userId, Consumer<MessageDto> action) {
+        log.debug("Database query to stream sent messages from user: {}", userId);
+        try (Stream<MessageDto> messages = messageRepository.streamSentMessages(userId)) {
+            messages.forEach(action);
+        }
+        log.debug("Retrieved successful");
+    }
+
+    /**
+     * Passes every message received by the user to the action, newest first, as the rows are fetched.
+     */
+    @Transactional(readOnly = true)
+    public void streamReceivedMessages(long userId, Consumer<MessageDto> action) {
+        log.debug("Database query to stream received messages from user: {}", userId);
+        try (Stream<MessageDto> messages = messageRepository.streamReceivedMessages(userId)) {
+            messages.forEach(action);
+        }
+        log.debug("Retrieved successful");
+    }
+
+    public PageResponse<MessageDto> getSentMessages(String username, String after, int size) {
+        log.debug("Database query to get a page of sent messages from user: {}, cursor: {}", username, after);
+        CursorCodec.checkPageSize(size);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new BadRequestException("Failed to get list of messages: Invalid username"));
-        List<Message> messageList = messageRepository.getMessagesBySenderOrderByIdDesc(user);
+        long[] cursor = CursorCodec.decode(after, 1);
+        List<Message> messageList = messageRepository.getMessagesBySenderAndIdLessThanOrderByIdDesc(
+                user, cursor == null ? Long.MAX_VALUE : cursor[0], PageRequest.of(0, size + 1));
         log.debug("Retrieved successful");
-        return messageList.stream().map(MessageDto::build).collect(Collectors.toList());
+        return CursorCodec.toPage(messageList, size, MessageDto::build,
+                message -> CursorCodec.encode(message.getId()));
     }
 
-    public List<MessageDto> getReceivedMessages(String username) {
-        log.debug("Database query to get list of received messages from user: {}", username);
+    public PageResponse<MessageDto> getReceivedMessages(String username, String after, int size) {
+        log.debug("Database query to get a page of received messages from user: {}, cursor: {}", username, after);
+        CursorCodec.checkPageSize(size);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new BadRequestException("Failed to get list of messages: Invalid username"));
-        List<Message> messageList = messageRepository.getMessagesByRecipientOrderByIdDesc(user);
+        long[] cursor = CursorCodec.decode(after, 1);
+        List<Message> messageList = messageRepository.getMessagesByRecipientAndIdLessThanOrderByIdDesc(
+                user, cursor == null ? Long.MAX_VALUE : cursor[0], PageRequest.of(0, size + 1));
+        log.debug("Retrieved successful");
+        return CursorCodec.toPage(messageList, size, MessageDto::build,
+                message -> CursorCodec.encode(message.getId()));
+    }
+
+    public PageResponse<MessageDto> getConversation(String username, String otherUsername, String after, int size) {
+        log.debug("Database query to get a page of the conversation between users: {} and {}, cursor: {}",
+                username, otherUsername, after);
+        CursorCodec.checkPageSize(size);
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new BadRequestException("Failed to get conversation: Invalid username"));
+        User other = userRepository.findByUsername(otherUsername)
+                .orElseThrow(() -> new BadRequestException("Failed to get conversation: Invalid other username"));
+        long[] cursor = CursorCodec.decode(after, 1);
+        List<Message> messageList = messageRepository.findConversation(
+                Math.min(user.getId(), other.getId()), Math.max(user.getId(), other.getId()),
+                cursor == null ? Long.MAX_VALUE : cursor[0], PageRequest.of(0, size + 1));
         log.debug("Retrieved successful");
-        return messageList.stream().map(MessageDto::build).collect(Collectors.toList());
+        return CursorCodec.toPage(messageList, size, MessageDto::build,
+                message -> CursorCodec.encode(message.getId()));
     }
 }
@@ -0,0 +1,256 @@
+package ru.effectivemobile.socialmedia.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.effectivemobile.socialmedia.event.MessageSentEvent;
+import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.messaging.MessageBroker;
+import ru.effectivemobile.socialmedia.model.Message;
+import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.repository.MessageRepository;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.web.dto.MessageDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes the received messages to the user over server-sent events.
+ * Every event carries the message id as its SSE id, so a client that reconnects with
+ * {@code Last-Event-ID} first receives the messages it missed and then the live ones,
+ * without reloading the message list.
+ * <p>
+ * Events are queued per connection and written by a pool of writer threads
+ * ({@code app.messages.stream-writer-threads}), one event at a time per connection: the broker callbacks,
+ * the request thread of the replay and the heartbeat never block on the socket of a slow client.
+ * A client that lets more than {@code app.messages.stream-max-queued-events} events pile up is disconnected,
+ * and replays the missed messages when it reconnects.
+ */
+@Service
+@Slf4j
+public class MessageStreamService {
+    // Messages replayed on reconnect; beyond that the client is told to reload the history
+    private static final int REPLAY_PAGE_SIZE = 100;
+    private static final int REPLAY_LIMIT = 1000;
+    // Queued in place of an event to complete the stream of a client that does not read it
+    private static final SseEmitter.SseEventBuilder DISCONNECT = SseEmitter.event();
+
+    private final UserRepository userRepository;
+    private final MessageRepository messageRepository;
+    private final MessageBroker messageBroker;
+    private final long timeout;
+    private final int maxQueuedEvents;
+    private final ExecutorService writers;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    public MessageStreamService(UserRepository userRepository,
+                                MessageRepository messageRepository,
+                                MessageBroker messageBroker,
+                                @Value("${app.messages.stream-timeout-ms}") long timeout,
+                                @Value("${app.messages.stream-writer-threads}") int writerThreads,
+                                @Value("${app.messages.stream-max-queued-events}") int maxQueuedEvents) {
+        this.userRepository = userRepository;
+        this.messageRepository = messageRepository;
+        this.messageBroker = messageBroker;
+        this.timeout = timeout;
+        this.maxQueuedEvents = maxQueuedEvents;
+        // Platform threads: the emitter writes in a synchronized method, which would pin a virtual thread.
+        // Unbounded queue: it holds at most one write task per connection
+        this.writers = Executors.newFixedThreadPool(writerThreads,
+                Thread.ofPlatform().name("message-stream-", 0).factory());
+    }
+
+    /**
+     * Opens a stream of the messages received by the user.
+     *
+     * @param lastId id of the last message the client has received, or null for live messages only
+     */
+    public SseEmitter open(String username, Long lastId) {
+        log.debug("Opening a message stream for user: {}, last message id: {}", username, lastId);
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new BadRequestException("Failed to open message stream: Invalid username"));
+        Connection connection = new Connection(new SseEmitter(timeout), lastId == null ? 0 : lastId);
+        // Subscribe before the replay so that nothing sent in between is lost
+        connection.subscription = messageBroker.subscribe(user.getId(), connection::deliver);
+        connections.add(connection);
+        connection.emitter.onCompletion(() -> close(connection));
+        connection.emitter.onTimeout(() -> close(connection));
+        connection.emitter.onError(e -> close(connection));
+        try {
+            if (lastId == null) {
+                connection.replayed(List.of(), false);
+            } else {
+                replay(user, connection, lastId);
+            }
+        } catch (RuntimeException e) {
+            // The emitter is never returned, so none of its callbacks would release the subscription
+            close(connection);
+            throw e;
+        }
+        return connection.emitter;
+    }
+
+    @Async
+    @TransactionalEventListener
+    public void onMessageSent(MessageSentEvent event) {
+        messageBroker.publish(event.getRecipientId(), event.getMessage());
+    }
+
+    /**
+     * Keeps idle connections open through proxies and detects the closed ones.
+     */
+    @Scheduled(fixedDelayString = "${app.messages.stream-heartbeat-ms}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            connection.send(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        writers.shutdownNow();
+    }
+
+    private void replay(User user, Connection connection, long lastId) {
+        List<MessageDto> missed = new ArrayList<>();
+        List<Message> page;
+        long afterId = lastId;
+        do {
+            page = messageRepository.getMessagesByRecipientAndIdGreaterThanOrderByIdAsc(
+                    user, afterId, PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (Message message : page) {
+                missed.add(MessageDto.build(message));
+                afterId = message.getId();
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE && missed.size() < REPLAY_LIMIT);
+        boolean overflow = page.size() == REPLAY_PAGE_SIZE;
+        log.debug("Replaying {} messages to user: {}", missed.size(), user.getUsername());
+        connection.replayed(missed, overflow);
+    }
+
+    private void close(Connection connection) {
+        connection.closed = true;
+        connections.remove(connection);
+        if (connection.subscription != null) {
+            connection.subscription.cancel();
+        }
+    }
+
+    private final class Connection {
+        private final SseEmitter emitter;
+        // Orders the replayed, pending and live messages as they are queued, never held while writing
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentLinkedQueue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        // Events queued and not written yet: the one queuing the first of them starts the writer task
+        private final AtomicInteger queued = new AtomicInteger();
+        private volatile boolean closed;
+        // Set by the writer task only
+        private boolean failed;
+        private MessageBroker.Subscription subscription;
+        // Live messages that arrived during the replay
+        private List<MessageDto> pending = new ArrayList<>();
+        private long lastSentId;
+
+        private Connection(SseEmitter emitter, long lastSentId) {
+            this.emitter = emitter;
+            this.lastSentId = lastSentId;
+        }
+
+        private void deliver(MessageDto message) {
+            lock.lock();
+            try {
+                if (pending != null) {
+                    pending.add(message);
+                } else {
+                    sendMessage(message);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void replayed(List<MessageDto> missed, boolean overflow) {
+            lock.lock();
+            try {
+                missed.forEach(this::sendMessage);
+                if (overflow) {
+                    // Too many missed messages: the client has to reload the history by the paginated endpoints
+                    send(SseEmitter.event().name("reset").data(""));
+                }
+                pending.sort(Comparator.comparingLong(MessageDto::getId));
+                pending.forEach(this::sendMessage);
+                pending = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void sendMessage(MessageDto message) {
+            if (message.getId() <= lastSentId) {
+                return;
+            }
+            lastSentId = message.getId();
+            send(SseEmitter.event()
+                    .id(String.valueOf(message.getId()))
+                    .name("message")
+                    .data(message, MediaType.APPLICATION_JSON));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (queued.get() >= maxQueuedEvents) {
+                log.debug("Message stream is not read by the client, disconnecting");
+                close(this);
+                event = DISCONNECT;
+            }
+            outbox.add(event);
+            if (queued.getAndIncrement() == 0) {
+                writers.execute(this::write);
+            }
+        }
+
+        private void write() {
+            do {
+                SseEmitter.SseEventBuilder event = outbox.poll();
+                if (!failed) {
+                    write(event);
+                }
+            } while (queued.decrementAndGet() > 0);
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) {
+            if (event == DISCONNECT) {
+                failed = true;
+                emitter.complete();
+                return;
+            }
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Message stream has been closed: {}", e.getMessage());
+                failed = true;
+                close(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.effectivemobile.socialmedia.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.effectivemobile.socialmedia.event.PostCreatedEvent;
+import ru.effectivemobile.socialmedia.event.PostRemovedEvent;
+import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.repository.PostRepository;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.search.PostSearchIndex;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search of the posts through the {@link PostSearchIndex}.
+ * The index follows the posts after their transaction commits, through its indexing queue,
+ * and can be rebuilt from the post table.
+ */
+@Service
+@Timed("app.service")
+@AllArgsConstructor
+@Slf4j
+public class PostSearchService {
+    private PostSearchIndex postSearchIndex;
+    private PostRepository postRepository;
+    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns a page of the posts matching the query, best match first.
+     *
+     * @param author only posts of this user, if not {@code null}
+     * @param from   only posts created at or after this time, if not {@code null}
+     * @param to     only posts created before this time, if not {@code null}
+     */
+    @Transactional(readOnly = true)
+    public PageResponse<PostDto> search(String query, String author, Instant from, Instant to,
+                                        String after, int size) {
+        log.debug("Search of the posts: query-{}, author-{}, from-{}, to-{}, cursor-{}", query, author, from, to,
+                after);
+        CursorCodec.checkPageSize(size);
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Failed to search the posts: Empty query");
+        }
+        Long authorId = author == null ? null : userRepository.findIdByUsername(author).orElseThrow(
+                () -> new BadRequestException("Failed to search the posts: Invalid username"));
+        long[] cursor = CursorCodec.decode(after, 2);
+        PostSearchIndex.Hit afterHit = cursor == null ? null
+                : new PostSearchIndex.Hit(cursor[1], Float.intBitsToFloat((int) cursor[0]));
+        List<PostSearchIndex.Hit> hits = postSearchIndex.search(query, authorId,
+                from == null ? null : from.toEpochMilli(), to == null ? null : to.toEpochMilli(), afterHit, size + 1);
+
+        boolean hasNext = hits.size() > size;
+        List<PostSearchIndex.Hit> pageHits = hasNext ? hits.subList(0, size) : hits;
+        Map<Long, PostDto> posts = pageHits.isEmpty() ? Map.of()
+                : postRepository.findDtosByIdIn(pageHits.stream().map(PostSearchIndex.Hit::postId).toList())
+                .stream().collect(Collectors.toMap(PostDto::getId, Function.identity()));
+        // Posts removed since the last refresh of the index are skipped
+        List<PostDto> items = pageHits.stream().map(hit -> posts.get(hit.postId())).filter(Objects::nonNull).toList();
+        PostSearchIndex.Hit last = hasNext ? pageHits.get(size - 1) : null;
+        log.debug("Retrieved successful");
+        return new PageResponse<>(items,
+                last == null ? null : CursorCodec.encode(Float.floatToIntBits(last.score()), last.postId()));
+    }
+
+    @TransactionalEventListener
+    public void onPostCreated(PostCreatedEvent event) {
+        postSearchIndex.enqueueIndex(event.getPostId(), event.getAuthorId(), event.getCreationTime().getTime(),
+                event.getHeader(), event.getText());
+    }
+
+    @TransactionalEventListener
+    public void onPostRemoved(PostRemovedEvent event) {
+        postSearchIndex.enqueueRemove(event.getPostId());
+    }
+
+    /**
+     * Rebuilds the index from the post table. One thread reads the table in batches in the id order,
+     * the given number of threads analyze and index the batches in parallel.
+     * Posts saved meanwhile are indexed through the queue as usual.
+     *
+     * @return the number of indexed posts
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long rebuild(int threads, int batchSize) {
+        log.info("Rebuilding the search index with {} threads", threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<?>> batches = new ArrayList<>();
+        long count = 0;
+        try {
+            postSearchIndex.deleteAll();
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT p.id, p.user, p.creation_time, p.header, p.text FROM post p WHERE p.id > ? " +
+                                "ORDER BY p.id LIMIT ?",
+                        (resultSet, rowNum) -> new Object[]{resultSet.getLong(1), resultSet.getLong(2),
+                                resultSet.getTimestamp(3).getTime(), resultSet.getString(4), resultSet.getString(5)},
+                        lastId, batchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                batches.add(executor.submit(() -> {
+                    for (Object[] row : rows) {
+                        postSearchIndex.index((Long) row[0], (Long) row[1], (Long) row[2],
+                                (String) row[3], (String) row[4]);
+                    }
+                    return null;
+                }));
+                count += rows.size();
+                lastId = (Long) rows.get(rows.size() - 1)[0];
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+            postSearchIndex.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rebuild the search index", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to rebuild the search index", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search index rebuild interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Search index has been rebuilt: {} posts", count);
+        return count;
+    }
+
+    /**
+     * Rebuilds the index if it is empty while the post table is not,
+     * on the first start after the index was introduced or after its directory was lost.
+     *
+     * @return the number of indexed posts
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long rebuildIfEmpty(int threads, int batchSize) {
+        if (postSearchIndex.count() > 0
+                || jdbcTemplate.queryForList("SELECT id FROM post LIMIT 1", Long.class).isEmpty()) {
+            return 0;
+        }
+        return rebuild(threads, batchSize);
+    }
+}
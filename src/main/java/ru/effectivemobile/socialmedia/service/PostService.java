@@ -1,63 +1,142 @@
 package ru.effectivemobile.socialmedia.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.effectivemobile.socialmedia.event.PostCreatedEvent;
+import ru.effectivemobile.socialmedia.event.PostRemovedEvent;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
 import ru.effectivemobile.socialmedia.exception.PostErrorException;
+import ru.effectivemobile.socialmedia.feed.RecentPostsCache;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
 import ru.effectivemobile.socialmedia.model.Post;
 import ru.effectivemobile.socialmedia.model.User;
 import ru.effectivemobile.socialmedia.repository.PostRepository;
 import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.storage.BlobStore;
 import ru.effectivemobile.socialmedia.web.dto.PostDto;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
 
+import java.io.InputStream;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 @Service
+@Timed("app.service")
 @Transactional
 @AllArgsConstructor
 @Slf4j
 public class PostService {
     private PostRepository postRepository;
     private UserRepository userRepository;
+    private TimelineService timelineService;
+    private ApplicationEventPublisher eventPublisher;
+    private BlobStore blobStore;
+    private RecentPostsCache recentPostsCache;
+    private SocialGraphIndex socialGraphIndex;
+    private ContentVersionService contentVersionService;
 
+    // The reads served by the recent posts cache run outside of a transaction: a ring loaded
+    // by the cache takes a connection of its own, the request holds at most one at a time
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<PostDto> getUserPosts(String username, int page, int size) {
         log.debug("Database query to get a list of posts of the user: {}", username);
         User user = userRepository.findByUsername(username).orElseThrow(
                 () -> new BadRequestException("Failed to get the list of user's posts: Invalid username"));
-        List<Post> postList = postRepository.findAllByUserOrderByIdDesc(user, PageRequest.of(page, size));
+        List<PostDto> postList = recentPostsCache.getPosts(user.getId(), null, (long) page * size, size);
+        if (postList == null) {
+            postList = postRepository.findDtosByUserId(user.getId(), PageRequest.of(page, size));
+        }
+        log.debug("Retrieved successful");
+        return postList;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PageResponse<PostDto> getUserPosts(String username, String after, int size) {
+        log.debug("Database query to get a page of posts of the user: {}, cursor: {}", username, after);
+        CursorCodec.checkPageSize(size);
+        User user = userRepository.findByUsername(username).orElseThrow(
+                () -> new BadRequestException("Failed to get the list of user's posts: Invalid username"));
+        long[] cursor = CursorCodec.decode(after, 1);
+        Long beforeId = cursor == null ? null : cursor[0];
+        PageRequest pageRequest = PageRequest.of(0, size + 1);
+        List<PostDto> postList = recentPostsCache.getPosts(user.getId(), beforeId, 0, size + 1);
+        if (postList == null) {
+            postList = cursor == null
+                    ? postRepository.findDtosByUserId(user.getId(), pageRequest)
+                    : postRepository.findDtosByUserIdAndIdLessThan(user.getId(), beforeId, pageRequest);
+        }
         log.debug("Retrieved successful");
-        return postList.stream().map(PostDto::build).collect(Collectors.toList());
+        return CursorCodec.toPage(postList, size, Function.identity(), post -> CursorCodec.encode(post.getId()));
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<PostDto> getActivityFeed(String username, int page, int size) {
         log.debug("Database query to get activity feed of the user: {}", username);
         User user = userRepository.findByUsername(username).orElseThrow(
                 () -> new BadRequestException("Failed to get user's activity feed: Invalid username"));
-        List<Post> postList = postRepository.findAllByUserIn(
-                user.getSubscriptions(),
-                PageRequest.of(page, size, Sort.by("creationTime").descending())
-        );
+        List<PostDto> postList = recentPostsCache.getFeed(socialGraphIndex.followingIds(user.getId()), null,
+                (long) page * size, size);
+        if (postList == null) {
+            postList = timelineService.getTimeline(user.getId(), page, size);
+        }
+        log.debug("Retrieved successful");
+        return postList;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PageResponse<PostDto> getActivityFeed(String username, String after, int size) {
+        log.debug("Database query to get a page of activity feed of the user: {}, cursor: {}", username, after);
+        CursorCodec.checkPageSize(size);
+        User user = userRepository.findByUsername(username).orElseThrow(
+                () -> new BadRequestException("Failed to get user's activity feed: Invalid username"));
+        long[] cursor = CursorCodec.decode(after, 2);
+        List<PostDto> postList = recentPostsCache.getFeed(socialGraphIndex.followingIds(user.getId()), cursor,
+                0, size + 1);
+        if (postList == null) {
+            postList = cursor == null
+                    ? timelineService.getTimeline(user.getId(), 0, size + 1)
+                    : timelineService.getTimelineAfter(user.getId(), new Date(cursor[0]), cursor[1], size + 1);
+        }
         log.debug("Retrieved successful");
-        return postList.stream().map(PostDto::build).collect(Collectors.toList());
+        return CursorCodec.toPage(postList, size, Function.identity(),
+                post -> CursorCodec.encode(post.getCreationTime().getTime(), post.getId()));
+    }
+
+    /**
+     * Streams a post image (an uploaded file or the content of a JSON post) into the blob store,
+     * outside of any transaction, so no database connection is held while the image is copied.
+     *
+     * @return the hash of the image to pass to {@link #savePost(String, String, String, String)}
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String storeImage(InputStream image) {
+        return blobStore.store(image);
     }
 
-    public PostDto savePost(String username, PostDto postDto) {
-        log.debug("Database query to save a new post: username-{}, post-{}", username, postDto);
+    public PostDto savePost(String username, String header, String text, String imageHash) {
+        log.debug("Database query to save a new post: username-{}, header-{}, image-{}", username, header, imageHash);
         User user = userRepository.findByUsername(username).orElseThrow(
                 () -> new BadRequestException("Failed to save the post: Invalid username"));
         Post post = new Post();
         post.setUser(user);
-        post.setHeader(postDto.getHeader());
-        post.setText(postDto.getText());
-        post.setImage(postDto.getImage());
+        post.setHeader(header);
+        post.setText(text);
+        post.setImageHash(imageHash);
         postRepository.save(post);
+        eventPublisher.publishEvent(new PostCreatedEvent(post.getId(), user.getId(), post.getCreationTime(),
+                post.getHeader(), post.getText()));
+        PostDto savedPost = PostDto.build(post);
+        recentPostsCache.addPost(user.getId(), savedPost);
+        contentVersionService.postsChanged(user.getId());
         log.debug("New post has been saved to the database: {}", post);
-        return PostDto.build(post);
+        return savedPost;
     }
 
     public void removePost(String username, long postId) {
@@ -70,6 +149,9 @@ public class PostService {
             throw new PostErrorException("Failed to remove the post: The post does not belong to the user");
         }
         postRepository.delete(post);
+        recentPostsCache.removePost(user.getId(), post.getId());
+        contentVersionService.postsChanged(user.getId());
+        eventPublisher.publishEvent(new PostRemovedEvent(post.getId(), user.getId()));
         log.debug("Post has been removed from the database");
     }
 }
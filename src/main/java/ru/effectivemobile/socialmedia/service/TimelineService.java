@@ -0,0 +1,114 @@
+package ru.effectivemobile.socialmedia.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.effectivemobile.socialmedia.event.FollowCreatedEvent;
+import ru.effectivemobile.socialmedia.event.FollowRemovedEvent;
+import ru.effectivemobile.socialmedia.event.PostCreatedEvent;
+import ru.effectivemobile.socialmedia.event.PostRemovedEvent;
+import ru.effectivemobile.socialmedia.repository.TimelineRepository;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Maintains the materialized home timelines (fan-out on write).
+ * Writes happen after the originating transaction commits, on the async executor,
+ * so they never add latency to the user-facing request.
+ * Feeds read from the timeline lag behind until then, so the versions of the changed feeds
+ * are bumped once more after every timeline write commits.
+ * <p>
+ * The async writes of one user are not ordered: the follow and unfollow handlers check the follow row
+ * before writing, so a quick unfollow and follow again end with the posts of the author in the timeline.
+ */
+@Service
+@Timed("app.service")
+@AllArgsConstructor
+@Slf4j
+public class TimelineService {
+    // Number of the followee's latest posts copied into the timeline on a new follow
+    private static final int FOLLOW_BACKFILL_LIMIT = 100;
+    // Posts copied per transaction by a rebuild, each into the timelines of all the followers of its author
+    private static final int REBUILD_BATCH_POSTS = 1000;
+
+    private TimelineRepository timelineRepository;
+    private ContentVersionService contentVersionService;
+
+    @Transactional(readOnly = true)
+    public List<PostDto> getTimeline(long userId, int page, int size) {
+        return timelineRepository.findFeed(userId, PageRequest.of(page, size));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PostDto> getTimelineAfter(long userId, Date creationTime, long postId, int limit) {
+        return timelineRepository.findFeedAfter(userId, creationTime, postId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Fills the timelines from the existing posts and subscriptions, {@value #REBUILD_BATCH_POSTS} posts
+     * per transaction. Does nothing if the timeline table already has rows.
+     *
+     * @return the number of added entries
+     */
+    public int rebuildIfEmpty() {
+        if (!timelineRepository.findAnyPostIds(PageRequest.of(0, 1)).isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        long afterId = 0;
+        Long lastId;
+        while ((lastId = timelineRepository.findLastPostIdOfBatch(afterId, REBUILD_BATCH_POSTS)) != null) {
+            count += timelineRepository.rebuild(afterId, lastId);
+            afterId = lastId;
+            log.debug("Timeline rebuilt up to post {}: {} entries", afterId, count);
+        }
+        log.info("Timeline table has been rebuilt: {} entries", count);
+        return count;
+    }
+
+    @Async
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onPostCreated(PostCreatedEvent event) {
+        int count = timelineRepository.fanOut(event.getPostId(), event.getAuthorId(), event.getCreationTime());
+        contentVersionService.postsChanged(event.getAuthorId());
+        log.debug("Post {} has been fanned out to {} timelines", event.getPostId(), count);
+    }
+
+    @Async
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onPostRemoved(PostRemovedEvent event) {
+        int count = timelineRepository.deleteByPostId(event.getPostId());
+        contentVersionService.postsChanged(event.getAuthorId());
+        log.debug("Post {} has been removed from {} timelines", event.getPostId(), count);
+    }
+
+    @Async
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onFollowCreated(FollowCreatedEvent event) {
+        int count = timelineRepository.backfill(event.getFollowerId(), event.getFolloweeId(), FOLLOW_BACKFILL_LIMIT);
+        contentVersionService.graphChanged(event.getFollowerId());
+        log.debug("{} posts of user {} have been added to the timeline of user {}",
+                count, event.getFolloweeId(), event.getFollowerId());
+    }
+
+    @Async
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onFollowRemoved(FollowRemovedEvent event) {
+        int count = timelineRepository.deleteUnfollowed(event.getFollowerId(), event.getFolloweeId());
+        contentVersionService.graphChanged(event.getFollowerId());
+        log.debug("{} posts of user {} have been removed from the timeline of user {}",
+                count, event.getFolloweeId(), event.getFollowerId());
+    }
+}
@@ -1,27 +1,49 @@
 package ru.effectivemobile.socialmedia.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.effectivemobile.socialmedia.event.FollowCreatedEvent;
+import ru.effectivemobile.socialmedia.event.FollowRemovedEvent;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
 import ru.effectivemobile.socialmedia.exception.InvitationErrorException;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.model.Follow;
+import ru.effectivemobile.socialmedia.model.FriendEdge;
 import ru.effectivemobile.socialmedia.model.Invitation;
 import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.repository.FollowRepository;
+import ru.effectivemobile.socialmedia.repository.FriendEdgeRepository;
 import ru.effectivemobile.socialmedia.repository.InvitationRepository;
 import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.search.UsernameIndex;
 import ru.effectivemobile.socialmedia.web.dto.UserDto;
+import ru.effectivemobile.socialmedia.web.dto.UserSuggestionDto;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed("app.service")
 @Transactional
 @AllArgsConstructor
 @Slf4j
 public class UserService {
+    private static final int MAX_SEARCH_LIMIT = 50;
+
     private UserRepository userRepository;
     private InvitationRepository invitationRepository;
+    private FriendEdgeRepository friendEdgeRepository;
+    private FollowRepository followRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private SocialGraphIndex socialGraphIndex;
+    private ContentVersionService contentVersionService;
+    private UsernameIndex usernameIndex;
 
     public void invite(String senderUsername, String recipientUsername) {
         log.debug("Database query to save a new invitation: sender-{}, recipient-{}",
@@ -33,7 +55,7 @@ public class UserService {
         if (recipient.equals(sender)) {
             throw new InvitationErrorException("Failed to invite: User cannot invite himself");
         }
-        if (sender.getFriends().contains(recipient)) {
+        if (socialGraphIndex.areFriends(sender.getId(), recipient.getId())) {
             throw new InvitationErrorException("Failed to invite: Users are already friends");
         }
         Invitation invitation = new Invitation();
@@ -42,9 +64,8 @@ public class UserService {
         if (invitationRepository.existsBySenderAndRecipient(sender, recipient)) {
             throw new InvitationErrorException("Failed to invite: The invitation has already been sent before");
         }
-        if (!sender.getSubscriptions().contains(recipient)) {
-            sender.getSubscriptions().add(recipient);
-            recipient.getSubscribers().add(sender);
+        if (!socialGraphIndex.follows(sender.getId(), recipient.getId())) {
+            follow(sender, recipient);
         }
         invitationRepository.save(invitation);
         log.debug("Invitation has been saved to the database: {}", invitation);
@@ -61,12 +82,21 @@ public class UserService {
                 .getInvitationByRecipientAndSender(recipient, sender)
                 .orElseThrow(
                         () -> new InvitationErrorException("Failed to accept friend invite: Invitation does not exist"));
-        recipient.getSubscriptions().add(sender);
-        recipient.getFriends().add(sender);
-        sender.getFriends().add(recipient);
-        sender.getSubscribers().add(recipient);
-        userRepository.save(recipient);
-        userRepository.save(sender);
+        if (socialGraphIndex.areFriends(recipient.getId(), sender.getId())) {
+            // Both users invited each other and the other invitation has been accepted first
+            invitationRepository.delete(invitation);
+            log.debug("Users {} and {} are already friends, invitation removed", senderUsername, recipientUsername);
+            return;
+        }
+        boolean newSubscription = !socialGraphIndex.follows(recipient.getId(), sender.getId());
+        if (newSubscription) {
+            follow(recipient, sender);
+        }
+        friendEdgeRepository.save(new FriendEdge(recipient.getId(), sender.getId()));
+        friendEdgeRepository.save(new FriendEdge(sender.getId(), recipient.getId()));
+        socialGraphIndex.addFriendship(recipient.getId(), sender.getId());
+        contentVersionService.graphChanged(recipient.getId());
+        contentVersionService.graphChanged(sender.getId());
         invitationRepository.delete(invitation);
         log.debug("New friend: {} for user: {} has been saved", senderUsername, recipientUsername);
     }
@@ -77,24 +107,66 @@ public class UserService {
                 () -> new BadRequestException("Failed to remove friend: Invalid username"));
         User friend = userRepository.findByUsername(friendUsername).orElseThrow(
                 () -> new BadRequestException("Failed to remove friend: Invalid friend username"));
-        if (!user.getFriends().contains(friend)) {
+        if (!socialGraphIndex.areFriends(user.getId(), friend.getId())) {
             throw new BadRequestException("Failed to remove friend: Friend with this username does not exist");
         }
-        user.getFriends().remove(friend);
-        user.getSubscriptions().remove(friend);
-        friend.getFriends().remove(user);
-        friend.getSubscribers().remove(user);
-        userRepository.save(friend);
-        userRepository.save(user);
+        friendEdgeRepository.deleteEdge(user.getId(), friend.getId());
+        friendEdgeRepository.deleteEdge(friend.getId(), user.getId());
+        socialGraphIndex.removeFriendship(user.getId(), friend.getId());
+        contentVersionService.graphChanged(user.getId());
+        contentVersionService.graphChanged(friend.getId());
+        unfollow(user, friend);
         log.debug("Friend-{} has been removed from the user-{}", friendUsername, username);
     }
 
-    public List<UserDto> getUserFriends(String username) {
-        log.debug("Database query to get a list of user friends: user-{}", username);
-        User user = userRepository.findByUsername(username).orElseThrow(
+    /**
+     * Resolves the user before the friends are streamed, while an invalid username can still be answered
+     * with an error status.
+     */
+    @Transactional(readOnly = true)
+    public long getUserId(String username) {
+        return userRepository.findIdByUsername(username).orElseThrow(
                 () -> new BadRequestException("Failed to get list of friend: Invalid username"));
-        List<User> friendList = user.getFriends();
+    }
+
+    /**
+     * Passes every friend of the user to the action as the rows are fetched:
+     * the friends are never held in memory together.
+     */
+    @Transactional(readOnly = true)
+    public void streamUserFriends(long userId, Consumer<UserDto> action) {
+        log.debug("Database query to stream user friends: user-{}", userId);
+        try (Stream<UserDto> friends = friendEdgeRepository.streamFriends(userId)) {
+            friends.forEach(action);
+        }
         log.debug("Retrieved successful");
-        return friendList.stream().map(UserDto::build).collect(Collectors.toList());
+    }
+
+    /**
+     * Usernames starting with the prefix, the most followed first, from the in-memory {@link UsernameIndex}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<UserSuggestionDto> searchUsers(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new BadRequestException("Failed to search users: Empty prefix");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new BadRequestException("Failed to search users: The limit must be from 1 to " + MAX_SEARCH_LIMIT);
+        }
+        return usernameIndex.search(prefix, limit);
+    }
+
+    private void follow(User follower, User followee) {
+        followRepository.save(new Follow(follower.getId(), followee.getId()));
+        socialGraphIndex.addFollow(follower.getId(), followee.getId());
+        contentVersionService.graphChanged(follower.getId());
+        eventPublisher.publishEvent(new FollowCreatedEvent(follower.getId(), followee.getId()));
+    }
+
+    private void unfollow(User follower, User followee) {
+        followRepository.deleteEdge(follower.getId(), followee.getId());
+        socialGraphIndex.removeFollow(follower.getId(), followee.getId());
+        contentVersionService.graphChanged(follower.getId());
+        eventPublisher.publishEvent(new FollowRemovedEvent(follower.getId(), followee.getId()));
     }
 }
@@ -0,0 +1,153 @@
+package ru.effectivemobile.socialmedia.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.effectivemobile.socialmedia.exception.PayloadTooLargeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Local-filesystem content-addressed store. A blob is kept once under its SHA-256 hash
+ * in a two-level fan-out directory ({@code ab/cd/abcd...}), so equal images share one file
+ * and a stored file never changes.
+ * <p>
+ * Uploads are streamed through a small buffer into a temporary file while their hash is computed,
+ * so the heap used per upload does not depend on the image size.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path root;
+    private final Path tmp;
+    private final DataSize maxImageSize;
+
+    public BlobStore(@Value("${app.storage.blob-dir}") String blobDir,
+                     @Value("${app.storage.max-image-size}") DataSize maxImageSize) {
+        this.root = Paths.get(blobDir).toAbsolutePath().normalize();
+        this.tmp = root.resolve("tmp");
+        this.maxImageSize = maxImageSize;
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create blob storage directory: " + root, e);
+        }
+    }
+
+    /**
+     * Stores the content and returns its hash.
+     */
+    public String store(byte[] content) {
+        String hash = HexFormat.of().formatHex(sha256().digest(content));
+        Path target = resolve(hash);
+        if (Files.exists(target)) {
+            return hash;
+        }
+        try {
+            Path tempFile = Files.createTempFile(tmp, "blob", null);
+            Files.write(tempFile, content);
+            moveIntoPlace(tempFile, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store blob " + hash, e);
+        }
+        log.debug("Blob {} has been stored: {} bytes", hash, content.length);
+        return hash;
+    }
+
+    /**
+     * Stores the content read from the stream and returns its hash.
+     * The stream is not closed.
+     *
+     * @throws PayloadTooLargeException if the content exceeds {@code app.storage.max-image-size};
+     *                                  nothing is stored then
+     */
+    public String store(InputStream content) {
+        MessageDigest digest = sha256();
+        long size = 0;
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(tmp, "blob", null);
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxImageSize.toBytes()) {
+                        throw new PayloadTooLargeException("The image is larger than " + maxImageSize);
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = resolve(hash);
+            if (Files.exists(target)) {
+                Files.delete(tempFile);
+            } else {
+                moveIntoPlace(tempFile, target);
+            }
+            tempFile = null;
+            log.debug("Blob {} has been stored: {} bytes", hash, size);
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store blob", e);
+        } finally {
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Returns the file of the blob with the given hash, if it exists.
+     */
+    public Optional<Path> find(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = resolve(hash);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    private void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        // A target stored concurrently by another request has identical content, so replacing it is safe
+        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary blob file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path resolve(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * JSON array response body written item by item while the items are produced, typically from a repository stream.
+ * The heap held by the response is the buffer of the generator, whatever the length of the array.
+ * <p>
+ * The body is written on the MVC async executor, after the controller has returned: the producer has to open
+ * its own transaction. If the client goes away, the producer is interrupted by an {@link UncheckedIOException}.
+ */
+public class JsonArrayStreamingBody<T> implements StreamingResponseBody {
+    private final ObjectWriter writer;
+    private final Consumer<Consumer<T>> producer;
+
+    /**
+     * @param producer passes every item of the array to the given consumer, in order
+     */
+    public JsonArrayStreamingBody(ObjectMapper objectMapper, Class<T> type, Consumer<Consumer<T>> producer) {
+        // Flushed when the buffers fill up, not after every item
+        this.writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.producer = producer;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+            // The container completes the response. A failure midway must leave the array unterminated,
+            // so that the client does not take the truncated array for the whole list
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartArray();
+            producer.accept(item -> {
+                try {
+                    writer.writeValue(generator, item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -19,8 +19,10 @@ import ru.effectivemobile.socialmedia.model.Role;
 import ru.effectivemobile.socialmedia.model.User;
 import ru.effectivemobile.socialmedia.repository.RoleRepository;
 import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.search.UsernameIndex;
 import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
 import ru.effectivemobile.socialmedia.security.jwt.JwtUtils;
+import ru.effectivemobile.socialmedia.security.jwt.TokenVersionRegistry;
 import ru.effectivemobile.socialmedia.web.dto.request.LoginRequest;
 import ru.effectivemobile.socialmedia.web.dto.request.SignupRequest;
 import ru.effectivemobile.socialmedia.web.dto.response.JwtResponse;
@@ -43,6 +45,8 @@ public class AuthController {
     private RoleRepository roleRepository;
     private PasswordEncoder passwordEncoder;
     private JwtUtils jwtUtils;
+    private TokenVersionRegistry tokenVersionRegistry;
+    private UsernameIndex usernameIndex;
 
     @PostMapping("/signin")
     @Operation(
@@ -150,7 +154,26 @@ public class AuthController {
         }
         user.setRoles(roles);
         userRepository.save(user);
+        usernameIndex.add(user.getId(), user.getUsername());
         log.info("Registration was successful. New User saved to the database: {}", user.getUsername());
         return ResponseEntity.ok(new MessageResponse("User has been successfully created"));
     }
+
+    @PostMapping("/signout")
+    @Operation(
+            summary = "Revokes user tokens",
+            description = "Revokes all JWT tokens issued to the authorized user, " +
+                    "including the one used for this request. " +
+                    "Returns result in String format nested in MessageResponse object"
+    )
+    public ResponseEntity<?> signOut() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl userDetails)) {
+            log.warn("Sign out request from unauthorized client");
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: User is not authorized"));
+        }
+        tokenVersionRegistry.revokeAll(userDetails.getId());
+        log.info("All tokens of the user: {} have been revoked", userDetails.getUsername());
+        return ResponseEntity.ok(new MessageResponse("User has been successfully signed out"));
+    }
 }
@@ -1,19 +1,33 @@
 package ru.effectivemobile.socialmedia.web.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.security.UserDetailsImpl;
+import ru.effectivemobile.socialmedia.service.ContentVersionService;
 import ru.effectivemobile.socialmedia.service.MessageService;
+import ru.effectivemobile.socialmedia.service.MessageStreamService;
+import ru.effectivemobile.socialmedia.web.JsonArrayStreamingBody;
 import ru.effectivemobile.socialmedia.web.dto.MessageDto;
 import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
-
-import java.util.List;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
 
 @RestController
 @AllArgsConstructor
@@ -28,6 +42,9 @@ import java.util.List;
 )
 public class MessageController {
     private MessageService messageService;
+    private ObjectMapper objectMapper;
+    private MessageStreamService messageStreamService;
+    private ContentVersionService contentVersionService;
 
     @PostMapping("/{sender}/{recipient}/send")
     @Operation(
@@ -59,13 +76,41 @@ public class MessageController {
     @Operation(
             summary = "Shows a list of messages sent by the user",
             description = "Takes the username from the path as input. " +
-                    "Takes all messages sent by user from the database and returns them as a list."
+                    "Takes all messages sent by user from the database and returns them as a list, " +
+                    "streamed as the messages are read"
     )
-    public ResponseEntity<?> getSentMessages(@PathVariable String username) {
+    public ResponseEntity<StreamingResponseBody> getSentMessages(@PathVariable String username) {
         log.info("New request from user: {} to get a list of his sent messages", username);
         try {
-            List<MessageDto> sentMessages = messageService.getSentMessages(username);
-            log.info("List of sent messages received successfully");
+            long userId = messageService.getUserId(username);
+            log.info("Streaming the list of sent messages");
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(new JsonArrayStreamingBody<>(
+                    objectMapper, MessageDto.class, action -> messageService.streamSentMessages(userId, action)));
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return streamingError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return streamingError(HttpStatus.INTERNAL_SERVER_ERROR, "Server error");
+        }
+    }
+
+    @GetMapping(value = "/{username}/sent", params = "after")
+    @Operation(
+            summary = "Shows a page of messages sent by the user",
+            description = "Takes the username from the path as input. " +
+                    "Returns a page of messages with the cursor of the next page. " +
+                    "The 'after' cursor is empty for the first page"
+    )
+    public ResponseEntity<?> getSentMessagesPage(
+            @PathVariable String username,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after") String after,
+            @Parameter(description = "Number of messages per page") @RequestParam(value = "size",
+                    defaultValue = "20") @Min(1) @Max(100) int size) {
+        log.info("New request from user: {} to get a page of his sent messages", username);
+        try {
+            PageResponse<MessageDto> sentMessages = messageService.getSentMessages(username, after, size);
+            log.info("Page of sent messages received successfully");
             return ResponseEntity.ok(sentMessages);
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
@@ -80,13 +125,83 @@ public class MessageController {
     @Operation(
             summary = "Shows a list of messages received by the user",
             description = "Takes the username from the path as input. " +
-                    "Takes all messages received by user from the database and returns them as a list.")
-    public ResponseEntity<?> getReceivedMessages(@PathVariable String username) {
+                    "Takes all messages received by user from the database and returns them as a list, " +
+                    "streamed as the messages are read. " +
+                    "Answers 304 if no message has been received since the ETag passed in If-None-Match")
+    public ResponseEntity<StreamingResponseBody> getReceivedMessages(@PathVariable String username,
+                                                                     WebRequest request) {
         log.info("New request from user: {} to get a list of his received messages", username);
         try {
-            List<MessageDto> sentMessages = messageService.getReceivedMessages(username);
-            log.info("List of received messages received successfully");
-            return ResponseEntity.ok(sentMessages);
+            String etag = contentVersionService.receivedMessagesTag(username);
+            if (etag != null && request.checkNotModified(etag)) {
+                log.info("Received messages have not been modified");
+                return null;
+            }
+            long userId = messageService.getUserId(username);
+            log.info("Streaming the list of received messages");
+            return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL)
+                    .contentType(MediaType.APPLICATION_JSON).body(new JsonArrayStreamingBody<>(objectMapper,
+                            MessageDto.class, action -> messageService.streamReceivedMessages(userId, action)));
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return streamingError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return streamingError(HttpStatus.INTERNAL_SERVER_ERROR, "Server error");
+        }
+    }
+
+    @GetMapping(value = "/{username}/received", params = "after")
+    @Operation(
+            summary = "Shows a page of messages received by the user",
+            description = "Takes the username from the path as input. " +
+                    "Returns a page of messages with the cursor of the next page. " +
+                    "The 'after' cursor is empty for the first page. " +
+                    "Answers 304 if no message has been received since the ETag passed in If-None-Match")
+    public ResponseEntity<?> getReceivedMessagesPage(
+            @PathVariable String username,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after") String after,
+            @Parameter(description = "Number of messages per page") @RequestParam(value = "size",
+                    defaultValue = "20") @Min(1) @Max(100) int size,
+            WebRequest request) {
+        log.info("New request from user: {} to get a page of his received messages", username);
+        try {
+            String etag = contentVersionService.receivedMessagesTag(username);
+            if (etag != null && request.checkNotModified(etag)) {
+                log.info("Received messages have not been modified");
+                return null;
+            }
+            PageResponse<MessageDto> receivedMessages = messageService.getReceivedMessages(username, after, size);
+            log.info("Page of received messages received successfully");
+            return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL).body(receivedMessages);
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ResponseEntity.internalServerError().body(new MessageResponse("Server error"));
+        }
+    }
+
+    @GetMapping("/{username}/with/{other}")
+    @Operation(
+            summary = "Shows the conversation between two users",
+            description = "Takes the usernames of the two users from the path as input. " +
+                    "Returns a page of the messages sent in both directions, newest first, " +
+                    "with the cursor of the next page. The 'after' cursor is omitted for the first page"
+    )
+    public ResponseEntity<?> getConversation(
+            @PathVariable String username,
+            @Parameter(description = "The other user of the conversation") @PathVariable String other,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after",
+                    required = false) String after,
+            @Parameter(description = "Number of messages per page") @RequestParam(value = "size",
+                    defaultValue = "20") @Min(1) @Max(100) int size) {
+        log.info("New request from user: {} to get the conversation with user: {}", username, other);
+        try {
+            PageResponse<MessageDto> conversation = messageService.getConversation(username, other, after, size);
+            log.info("Page of the conversation received successfully");
+            return ResponseEntity.ok(conversation);
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
@@ -95,4 +210,58 @@ public class MessageController {
             return ResponseEntity.internalServerError().body(new MessageResponse("Server error"));
         }
     }
+
+    @GetMapping("/{username}/stream")
+    @Operation(
+            summary = "Streams the messages received by the user",
+            description = "Takes the username from the path as input. Opens a server-sent events stream " +
+                    "that pushes every new message received by the user as a 'message' event with the " +
+                    "message id as the event id. On reconnect, the messages after the Last-Event-ID header " +
+                    "(or the 'lastId' parameter) are sent first. A 'reset' event means that too many messages " +
+                    "were missed and the history has to be reloaded. Since EventSource cannot set headers, " +
+                    "the JWT may be passed in the 'access_token' parameter"
+    )
+    public ResponseEntity<SseEmitter> streamMessages(
+            @PathVariable String username,
+            @Parameter(description = "Id of the last received message") @RequestHeader(value = "Last-Event-ID",
+                    required = false) Long lastEventId,
+            @Parameter(description = "Id of the last received message, if the header cannot be set")
+            @RequestParam(value = "lastId", required = false) Long lastId) {
+        log.info("New request from user: {} to open a message stream", username);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl userDetails)
+                || !userDetails.getUsername().equals(username)) {
+            log.warn("Message stream of user: {} requested by another user", username);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            SseEmitter emitter = messageStreamService.open(username, lastEventId != null ? lastEventId : lastId);
+            log.info("Message stream opened successfully");
+            return ResponseEntity.ok(emitter);
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Every worker of the streamed lists is busy and their queue is full (see {@code WebAsyncConfig}).
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<?> streamsBusy(TaskRejectedException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new MessageResponse("Too many lists are being downloaded, retry later"));
+    }
+
+    /**
+     * Error answer of the streamed lists, whose declared body has to be a {@link StreamingResponseBody}.
+     */
+    private ResponseEntity<StreamingResponseBody> streamingError(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> outputStream.write(objectMapper.writeValueAsBytes(new MessageResponse(message))));
+    }
 }
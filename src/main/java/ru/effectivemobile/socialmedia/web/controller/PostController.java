@@ -8,13 +8,23 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.exception.PayloadTooLargeException;
+import ru.effectivemobile.socialmedia.service.ContentVersionService;
 import ru.effectivemobile.socialmedia.service.PostService;
 import ru.effectivemobile.socialmedia.web.dto.PostDto;
 import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -30,25 +40,42 @@ import java.util.List;
 )
 public class PostController {
     private PostService postService;
+    private ContentVersionService contentVersionService;
 
     @GetMapping("/{username}")
     @Operation(
             summary = "Shows the list of user posts",
             description = "Takes the username from path as input. " +
                     "It can also accept page pagination parameters: " +
-                    "the number of pages and the number of posts per page. Returns a list of all user posts"
+                    "the number of pages and the number of posts per page. Returns a list of all user posts. " +
+                    "If the 'after' cursor is passed (empty for the first page), " +
+                    "returns a page of posts with the cursor of the next page instead. " +
+                    "Answers 304 if the posts have not changed since the ETag passed in If-None-Match"
     )
     public ResponseEntity<?> getPosts(
             @PathVariable("username") String username,
             @Parameter(description = "Number of displayed pages") @RequestParam(value = "page",
                     defaultValue = "0") @Min(0) int page,
             @Parameter(description = "Number of displayed posts per page") @RequestParam(value = "size",
-                    defaultValue = "10") @Min(1) @Max(100) int size) {
+                    defaultValue = "10") @Min(1) @Max(100) int size,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after",
+                    required = false) String after,
+            WebRequest request) {
         log.info("New request to get list of user's posts: {}", username);
         try {
+            String etag = contentVersionService.postsTag(username);
+            if (etag != null && request.checkNotModified(etag)) {
+                log.info("Posts have not been modified");
+                return null;
+            }
+            if (after != null) {
+                PageResponse<PostDto> userPosts = postService.getUserPosts(username, after, size);
+                log.info("Page of posts received successfully");
+                return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL).body(userPosts);
+            }
             List<PostDto> userPosts = postService.getUserPosts(username, page, size);
             log.info("List of posts received successfully");
-            return ResponseEntity.ok(userPosts);
+            return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL).body(userPosts);
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
@@ -68,9 +95,14 @@ public class PostController {
                                       @RequestBody PostDto post) {
         log.info("New request from user: {} to save a new post", username);
         try {
-            PostDto createdPost = postService.savePost(username, post);
+            String imageHash = post.getImage() == null || post.getImage().length == 0 ? null
+                    : postService.storeImage(new ByteArrayInputStream(post.getImage()));
+            PostDto createdPost = postService.savePost(username, post.getHeader(), post.getText(), imageHash);
             log.info("Post successfully saved");
             return ResponseEntity.ok(createdPost);
+        } catch (PayloadTooLargeException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new MessageResponse(e.getMessage()));
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
@@ -80,6 +112,53 @@ public class PostController {
         }
     }
 
+    @PostMapping(value = "/{username}/save", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Adds and saves a new post with an uploaded image",
+            description = "Takes as input a username from the path and a multipart form: " +
+                    "the header and text fields and an optional image file. " +
+                    "Streams the image into the storage, then saves the post to the database. " +
+                    "Returns the saved object as a response, or 413 if the image is too large."
+    )
+    public ResponseEntity<?> savePostWithImage(
+            @PathVariable("username") String username,
+            @Parameter(description = "Post header") @RequestParam("header") String header,
+            @Parameter(description = "Post text") @RequestParam("text") String text,
+            @Parameter(description = "Post image") @RequestPart(value = "image", required = false)
+            MultipartFile image) {
+        log.info("New request from user: {} to save a new post with an uploaded image", username);
+        try {
+            String imageHash = null;
+            if (image != null && !image.isEmpty()) {
+                try (InputStream content = image.getInputStream()) {
+                    imageHash = postService.storeImage(content);
+                }
+            }
+            PostDto createdPost = postService.savePost(username, header, text, imageHash);
+            log.info("Post successfully saved");
+            return ResponseEntity.ok(createdPost);
+        } catch (PayloadTooLargeException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new MessageResponse(e.getMessage()));
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ResponseEntity.internalServerError().body(new MessageResponse("Server error"));
+        }
+    }
+
+    /**
+     * The container rejects an image over {@code app.storage.max-image-size} while reading the body.
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> uploadTooLarge(MaxUploadSizeExceededException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new MessageResponse("The image exceeds the maximum upload size"));
+    }
+
     @DeleteMapping("/{username}/remove/{id}")
     @Operation(
             summary = "Removes a user's post by ID",
@@ -110,19 +189,35 @@ public class PostController {
             description = "Takes the username from path as input. " +
                     "It can also accept page pagination parameters: " +
                     "the number of pages and the number of posts per page. " +
-                    "Returns a list of posts sorted by newest and with pagination settings applied"
+                    "Returns a list of posts sorted by newest and with pagination settings applied. " +
+                    "If the 'after' cursor is passed (empty for the first page), " +
+                    "returns a page of posts with the cursor of the next page instead. " +
+                    "Answers 304 if the feed has not changed since the ETag passed in If-None-Match"
     )
     public ResponseEntity<?> activityFeed(
             @PathVariable String username,
             @Parameter(description = "Number of displayed pages") @RequestParam(value = "page",
                     defaultValue = "0") @Min(0) int page,
             @Parameter(description = "Number of displayed posts per page") @RequestParam(value = "size",
-                    defaultValue = "10") @Min(1) @Max(100) int size) {
+                    defaultValue = "10") @Min(1) @Max(100) int size,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after",
+                    required = false) String after,
+            WebRequest request) {
         log.info("New request from user: {} to get his activity feed", username);
         try {
+            String etag = contentVersionService.feedTag(username);
+            if (etag != null && request.checkNotModified(etag)) {
+                log.info("Activity feed has not been modified");
+                return null;
+            }
+            if (after != null) {
+                PageResponse<PostDto> activityFeed = postService.getActivityFeed(username, after, size);
+                log.info("Page of activity feed received successfully");
+                return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL).body(activityFeed);
+            }
             List<PostDto> activityFeed = postService.getActivityFeed(username, page, size);
             log.info("Activity feed received successfully");
-            return ResponseEntity.ok(activityFeed);
+            return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL).body(activityFeed);
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
@@ -0,0 +1,70 @@
+package ru.effectivemobile.socialmedia.web.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.service.PostSearchService;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
+import ru.effectivemobile.socialmedia.web.dto.response.PageResponse;
+
+import java.time.Instant;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/api/search")
+@SecurityRequirement(name = "JWT")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@Tag(
+        name = "Search Controller",
+        description = "Performs the full-text search. Kept apart from the post paths, " +
+                "where /api/posts/{username} takes any username."
+)
+public class SearchController {
+    private PostSearchService postSearchService;
+
+    @GetMapping("/posts")
+    @Operation(
+            summary = "Searches the posts",
+            description = "Takes the search query as input: words (all must match), \"phrases\", -excluded words, " +
+                    "prefix* and alternatives separated by |. Matches in the header weigh more than in the text. " +
+                    "Can be restricted to one author and to a creation time range. " +
+                    "Returns a page of posts, best match first, with the cursor of the next page. " +
+                    "New posts are found about a second after they are saved"
+    )
+    public ResponseEntity<?> searchPosts(
+            @Parameter(description = "Search query") @RequestParam("q") String query,
+            @Parameter(description = "Username of the author") @RequestParam(value = "author",
+                    required = false) String author,
+            @Parameter(description = "Posts created at or after this time, ISO 8601") @RequestParam(value = "from",
+                    required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @Parameter(description = "Posts created before this time, ISO 8601") @RequestParam(value = "to",
+                    required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @Parameter(description = "Cursor of the next page") @RequestParam(value = "after",
+                    defaultValue = "") String after,
+            @Parameter(description = "Number of posts per page") @RequestParam(value = "size",
+                    defaultValue = "20") @Min(1) @Max(100) int size) {
+        log.info("New request to search the posts: {}", query);
+        try {
+            PageResponse<PostDto> posts = postSearchService.search(query, author, from, to, after, size);
+            log.info("Search results received successfully");
+            return ResponseEntity.ok(posts);
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ResponseEntity.internalServerError().body(new MessageResponse("Server error"));
+        }
+    }
+}
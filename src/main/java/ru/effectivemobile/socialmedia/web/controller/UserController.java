@@ -1,16 +1,27 @@
 package ru.effectivemobile.socialmedia.web.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.effectivemobile.socialmedia.exception.BadRequestException;
+import ru.effectivemobile.socialmedia.service.ContentVersionService;
 import ru.effectivemobile.socialmedia.service.UserService;
+import ru.effectivemobile.socialmedia.web.JsonArrayStreamingBody;
 import ru.effectivemobile.socialmedia.web.dto.UserDto;
+import ru.effectivemobile.socialmedia.web.dto.UserSuggestionDto;
 import ru.effectivemobile.socialmedia.web.dto.response.MessageResponse;
 
 import java.util.List;
@@ -28,6 +39,8 @@ import java.util.List;
 )
 public class UserController {
     private UserService userService;
+    private ObjectMapper objectMapper;
+    private ContentVersionService contentVersionService;
 
     @GetMapping("/{sender}/{recipient}/invite")
     @Operation(
@@ -83,14 +96,47 @@ public class UserController {
     @Operation(
             summary = "Shows the user's friends list",
             description = "Takes the username from the path as input. " +
-                    "Validates data. Returns a list of all user's friends"
+                    "Validates data. Returns a list of all user's friends. " +
+                    "Answers 304 if the friends have not changed since the ETag passed in If-None-Match"
     )
-    public ResponseEntity<?> getFriends(@PathVariable String username) {
+    public ResponseEntity<StreamingResponseBody> getFriends(@PathVariable String username, WebRequest request) {
         log.info("New request from user: {} to get the list of friends", username);
         try {
-            List <UserDto> userFriends = userService.getUserFriends(username);
-            log.info("Friends list received successfully");
-            return ResponseEntity.ok(userFriends);
+            String etag = contentVersionService.friendsTag(username);
+            if (etag != null && request.checkNotModified(etag)) {
+                log.info("Friends list has not been modified");
+                return null;
+            }
+            long userId = userService.getUserId(username);
+            log.info("Streaming the friends list");
+            return ResponseEntity.ok().cacheControl(ContentVersionService.CACHE_CONTROL)
+                    .contentType(MediaType.APPLICATION_JSON).body(new JsonArrayStreamingBody<>(objectMapper,
+                            UserDto.class, action -> userService.streamUserFriends(userId, action)));
+        } catch (BadRequestException e) {
+            log.warn(e.getMessage());
+            return streamingError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return streamingError(HttpStatus.INTERNAL_SERVER_ERROR, "Server error");
+        }
+    }
+
+    @GetMapping("/search")
+    @Operation(
+            summary = "Suggests users by the beginning of their username",
+            description = "Takes the prefix of the username as input, case-insensitive for Latin letters. " +
+                    "Returns the matching users, the most followed first. " +
+                    "Served from memory, without a database query"
+    )
+    public ResponseEntity<?> searchUsers(
+            @Parameter(description = "Beginning of the username") @RequestParam("prefix") String prefix,
+            @Parameter(description = "Maximal number of users") @RequestParam(value = "limit",
+                    defaultValue = "10") @Min(1) @Max(50) int limit) {
+        log.info("New request to search users by the prefix: {}", prefix);
+        try {
+            List<UserSuggestionDto> users = userService.searchUsers(prefix, limit);
+            log.info("Users found successfully");
+            return ResponseEntity.ok(users);
         } catch (BadRequestException e) {
             log.warn(e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
@@ -123,4 +169,22 @@ public class UserController {
             return ResponseEntity.internalServerError().body(new MessageResponse("Server error"));
         }
     }
+
+    /**
+     * Every worker of the streamed lists is busy and their queue is full (see {@code WebAsyncConfig}).
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<?> streamsBusy(TaskRejectedException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new MessageResponse("Too many lists are being downloaded, retry later"));
+    }
+
+    /**
+     * Error answer of the streamed lists, whose declared body has to be a {@link StreamingResponseBody}.
+     */
+    private ResponseEntity<StreamingResponseBody> streamingError(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> outputStream.write(objectMapper.writeValueAsBytes(new MessageResponse(message))));
+    }
 }
@@ -1,5 +1,7 @@
 package ru.effectivemobile.socialmedia.web.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Getter;
 import ru.effectivemobile.socialmedia.model.Message;
@@ -13,13 +15,20 @@ public class MessageDto implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, type = "string")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final long id;
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private final String sender;
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private final String recipient;
     private final String text;
 
-    private MessageDto(String sender, String recipient, String text) {
+    /**
+     * Row mapping target of the reactive read API, which selects the sender and recipient names by join.
+     */
+    public MessageDto(long id, String sender, String recipient, String text) {
+        this.id = id;
         this.sender = sender;
         this.recipient = recipient;
         this.text = text;
@@ -27,6 +36,7 @@ public class MessageDto implements Serializable {
 
     public static MessageDto build(Message message) {
         return new MessageDto(
+                message.getId(),
                 message.getSender().getUsername(),
                 message.getRecipient().getUsername(),
                 message.getText());
@@ -1,5 +1,9 @@
 package ru.effectivemobile.socialmedia.web.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Getter;
 import ru.effectivemobile.socialmedia.model.Post;
@@ -14,32 +18,49 @@ public class PostDto implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    public static final String IMAGE_URL_PREFIX = "/api/images/";
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, type = "string")
+    @JsonSerialize(using = ToStringSerializer.class)
     private final long id;
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private final String username;
     private final String header;
     private final String text;
+    @Schema(accessMode = Schema.AccessMode.WRITE_ONLY, description = "Image content of a new post")
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private final byte[] image;
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, description = "URL of the post image")
+    private final String imageUrl;
     private final Date creationTime;
 
-
-
-    private PostDto(long id, String username, String header, String text, byte[] image, Date creationTime) {
+    @JsonCreator
+    private PostDto(long id, String username, String header, String text, byte[] image, String imageUrl,
+                    Date creationTime) {
         this.id = id;
         this.username = username;
         this.header = header;
         this.text = text;
         this.image = image;
+        this.imageUrl = imageUrl;
         this.creationTime = creationTime;
     }
 
+    /**
+     * Constructor expression target of the read queries, which select the post columns
+     * and the author name in one row instead of loading managed entities.
+     */
+    public PostDto(long id, String username, String header, String text, String imageHash, Date creationTime) {
+        this(id, username, header, text, null, imageHash == null ? null : IMAGE_URL_PREFIX + imageHash, creationTime);
+    }
+
     public static PostDto build(Post post) {
         return new PostDto(post.getId(),
                 post.getUser().getUsername(),
                 post.getHeader(),
                 post.getText(),
-                post.getImage(),
+                null,
+                post.getImageHash() == null ? null : IMAGE_URL_PREFIX + post.getImageHash(),
                 post.getCreationTime());
     }
 }
@@ -1,5 +1,7 @@
 package ru.effectivemobile.socialmedia.web.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Getter;
 import ru.effectivemobile.socialmedia.model.User;
@@ -14,7 +16,8 @@ public class UserDto implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, type = "string")
+    @JsonSerialize(using = ToStringSerializer.class)
     private final long id;
     private final String username;
     private final String email;
@@ -0,0 +1,19 @@
+package ru.effectivemobile.socialmedia.web.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@Schema(description = "User found by the username typeahead")
+public class UserSuggestionDto {
+    @Schema(type = "string")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final long id;
+    private final String username;
+    @Schema(description = "Number of followers, the ranking of the suggestions")
+    private final int followers;
+}
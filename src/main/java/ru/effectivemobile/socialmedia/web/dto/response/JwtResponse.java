@@ -1,5 +1,7 @@
 package ru.effectivemobile.socialmedia.web.dto.response;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -10,6 +12,7 @@ import java.util.List;
 public class JwtResponse {
     private String token;
     private String type = "Bearer";
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
     private String username;
     private String email;
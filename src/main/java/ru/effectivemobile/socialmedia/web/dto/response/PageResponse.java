@@ -0,0 +1,16 @@
+package ru.effectivemobile.socialmedia.web.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+@Schema(description = "Page of a keyset-paginated listing")
+public class PageResponse<T> {
+    private final List<T> items;
+    @Schema(description = "Opaque cursor of the next page, absent on the last page")
+    private final String nextCursor;
+}
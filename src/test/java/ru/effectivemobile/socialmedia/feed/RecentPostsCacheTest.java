@@ -0,0 +1,174 @@
+package ru.effectivemobile.socialmedia.feed;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.effectivemobile.socialmedia.repository.PostRepository;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecentPostsCacheTest {
+	private static final Comparator<PostDto> TIMELINE_ORDER = Comparator
+			.comparing((PostDto post) -> post.getCreationTime().getTime())
+			.thenComparing(PostDto::getId)
+			.reversed();
+
+	private final Map<Long, List<PostDto>> postsByAuthor = new HashMap<>();
+	private final PostRepository postRepository = mock(PostRepository.class);
+	// Repeatable read: a transaction sees the posts committed when it began
+	private final Deque<Map<Long, List<PostDto>>> snapshots = new ArrayDeque<>();
+	private final PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+		@Override
+		public TransactionStatus getTransaction(TransactionDefinition definition) {
+			boolean isNew = snapshots.isEmpty()
+					|| definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW;
+			if (isNew) {
+				Map<Long, List<PostDto>> snapshot = new HashMap<>();
+				postsByAuthor.forEach((author, posts) -> snapshot.put(author, List.copyOf(posts)));
+				snapshots.push(snapshot);
+			}
+			return new SimpleTransactionStatus(isNew);
+		}
+
+		@Override
+		public void commit(TransactionStatus status) {
+			if (status.isNewTransaction()) {
+				snapshots.pop();
+			}
+		}
+
+		@Override
+		public void rollback(TransactionStatus status) {
+			commit(status);
+		}
+	};
+
+	private RecentPostsCache newCache(int postsPerAuthor, long maxPosts) {
+		when(postRepository.findDtosByUserId(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+			Map<Long, List<PostDto>> visible = snapshots.isEmpty() ? postsByAuthor : snapshots.peek();
+			List<PostDto> posts = visible.getOrDefault(invocation.<Long>getArgument(0), List.of());
+			Pageable pageable = invocation.getArgument(1);
+			return posts.subList(0, Math.min(posts.size(), pageable.getPageSize()));
+		});
+		return new RecentPostsCache(postRepository, transactionManager, new SimpleMeterRegistry(), true,
+				postsPerAuthor, maxPosts, 500, 100);
+	}
+
+	@Test
+	void feedPagesMatchTheMergedTimelineOrFallBack() {
+		Random random = new Random(7);
+		List<PostDto> all = new ArrayList<>();
+		long[] authors = new long[30];
+		long id = 1;
+		for (int author = 0; author < authors.length; author++) {
+			authors[author] = 100 + author;
+			List<PostDto> posts = new ArrayList<>();
+			// Coarse times, so posts of different authors share a creation time
+			long[] times = random.longs(random.nextInt(25), 0, 50).map(time -> time * 1000).sorted().toArray();
+			for (long time : times) {
+				posts.add(0, post(id++, authors[author], time));
+			}
+			postsByAuthor.put(authors[author], posts);
+			all.addAll(posts);
+		}
+		all.sort(TIMELINE_ORDER);
+		RecentPostsCache cache = newCache(10, 10_000);
+
+		List<PostDto> firstPage = cache.getFeed(authors, null, 0, 10);
+		assertEquals(all.subList(0, 10), firstPage);
+
+		int served = 0;
+		long[] cursor = null;
+		for (int offset = 0; offset < all.size(); offset += 10) {
+			List<PostDto> page = cache.getFeed(authors, cursor, 0, 10);
+			if (page == null) {
+				break;
+			}
+			assertEquals(all.subList(offset, Math.min(all.size(), offset + 10)), page);
+			served++;
+			PostDto last = page.get(page.size() - 1);
+			cursor = new long[]{last.getCreationTime().getTime(), last.getId()};
+		}
+		assertTrue(served >= 1);
+		assertEquals(all.subList(10, 20), cache.getFeed(authors, null, 10, 10));
+	}
+
+	@Test
+	void newAndRemovedPostsUpdateTheBuffer() {
+		postsByAuthor.put(1L, new ArrayList<>(List.of(post(3, 1, 3000), post(2, 1, 2000), post(1, 1, 1000))));
+		RecentPostsCache cache = newCache(3, 100);
+		assertEquals(List.of(3L, 2L, 1L), ids(cache.getPosts(1, null, 0, 5)));
+
+		cache.addPost(1, post(4, 1, 4000));
+		assertEquals(List.of(4L, 3L, 2L), ids(cache.getPosts(1, null, 0, 3)));
+		// The oldest post has been dropped, so the buffer cannot tell whether there are more
+		assertNull(cache.getPosts(1, null, 0, 4));
+
+		cache.removePost(1, 3);
+		assertEquals(List.of(4L, 2L), ids(cache.getPosts(1, null, 0, 2)));
+		assertEquals(List.of(2L), ids(cache.getPosts(1, 4L, 0, 1)));
+		assertEquals(2, cache.postCount());
+	}
+
+	@Test
+	void postCommittedDuringTheReaderTransactionIsNotLost() {
+		postsByAuthor.put(1L, new ArrayList<>(List.of(post(1, 1, 1000))));
+		postsByAuthor.put(2L, new ArrayList<>(List.of(post(2, 2, 2000))));
+		RecentPostsCache cache = newCache(5, 100);
+
+		// The reader's transaction begins, then a post of a followee not cached yet commits
+		TransactionStatus reader = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+		postsByAuthor.get(2L).add(0, post(3, 2, 3000));
+		cache.addPost(2, post(3, 2, 3000));
+		assertEquals(List.of(3L, 2L, 1L), ids(cache.getFeed(new long[]{1, 2}, null, 0, 10)));
+		transactionManager.commit(reader);
+
+		assertEquals(List.of(3L, 2L), ids(cache.getPosts(2, null, 0, 5)));
+	}
+
+	@Test
+	void evictsLeastRecentlyReadAuthors() {
+		for (long author = 1; author <= 3; author++) {
+			postsByAuthor.put(author, List.of(post(author * 10 + 2, author, 2000), post(author * 10 + 1, author, 1000)));
+		}
+		RecentPostsCache cache = newCache(5, 4);
+		cache.getPosts(1, null, 0, 1);
+		cache.getPosts(2, null, 0, 1);
+		cache.getPosts(1, null, 0, 1);
+		cache.getPosts(3, null, 0, 1);
+
+		assertEquals(2, cache.authorCount());
+		assertEquals(4, cache.postCount());
+		// Author 2 was read least recently: a read loads it again
+		cache.getPosts(2, null, 0, 1);
+		cache.getPosts(2, null, 0, 1);
+		assertEquals(2, cache.authorCount());
+	}
+
+	private static PostDto post(long id, long author, long creationTime) {
+		return new PostDto(id, "user" + author, "Header " + id, "Text " + id, null, new Date(creationTime));
+	}
+
+	private static List<Long> ids(List<PostDto> posts) {
+		return posts.stream().map(PostDto::getId).toList();
+	}
+}
@@ -0,0 +1,121 @@
+package ru.effectivemobile.socialmedia.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+import ru.effectivemobile.socialmedia.repository.TimelineRepository;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+import ru.effectivemobile.socialmedia.service.TimelineService;
+import ru.effectivemobile.socialmedia.web.dto.PostDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TimelineTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private TimelineRepository timelineRepository;
+	@Autowired
+	private TimelineService timelineService;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void followEventsHandledOutOfOrderKeepTheTimelineOfTheFollows() throws Exception {
+		String reader = api.signUp("timelinereader");
+		String author = api.signUp("timelineauthor");
+		String stranger = api.signUp("timelinestranger");
+		api.call(get("/api/user/" + reader + "/" + author + "/invite"), reader);
+		List<Long> posts = new ArrayList<>();
+		for (int n = 0; n < 3; n++) {
+			posts.add(0, api.json(post("/api/posts/" + author + "/save").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"header\":\"Post " + n + "\",\"text\":\"Text " + n + "\"}"), author).get("id").asLong());
+		}
+		long readerId = userRepository.findIdByUsername(reader).orElseThrow();
+		long authorId = userRepository.findIdByUsername(author).orElseThrow();
+		long strangerId = userRepository.findIdByUsername(stranger).orElseThrow();
+		assertEquals(posts, awaitTimeline(readerId, 3));
+
+		// The unfollow of an earlier follow handled after a new follow, the follow after its unfollow
+		assertEquals(Integer.valueOf(0),
+				transactionTemplate.execute(status -> timelineRepository.deleteUnfollowed(readerId, authorId)));
+		assertEquals(Integer.valueOf(0),
+				transactionTemplate.execute(status -> timelineRepository.backfill(strangerId, authorId, 100)));
+		assertEquals(posts, ids(timelineService.getTimeline(readerId, 0, 10)));
+		assertEquals(List.of(), timelineService.getTimeline(strangerId, 0, 10));
+	}
+
+	@Test
+	void rebuildsTheTimelinesInBatches() throws Exception {
+		String reader = api.signUp("rebuildreader");
+		String author = api.signUp("rebuildauthor");
+		api.call(get("/api/user/" + reader + "/" + author + "/invite"), reader);
+		List<Long> posts = new ArrayList<>();
+		for (int n = 0; n < 3; n++) {
+			posts.add(0, api.json(post("/api/posts/" + author + "/save").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"header\":\"Post " + n + "\",\"text\":\"Text " + n + "\"}"), author).get("id").asLong());
+		}
+		long readerId = userRepository.findIdByUsername(reader).orElseThrow();
+		awaitTimeline(readerId, 3);
+
+		assertEquals(posts.get(1), timelineRepository.findLastPostIdOfBatch(posts.get(2), 1));
+		assertEquals(posts.get(0), timelineRepository.findLastPostIdOfBatch(posts.get(2), 2));
+		assertNull(timelineRepository.findLastPostIdOfBatch(posts.get(0), 1));
+
+		timelineRepository.deleteAllInBatch();
+		assertTrue(timelineService.rebuildIfEmpty() >= 3);
+		assertEquals(posts, ids(timelineService.getTimeline(readerId, 0, 10)));
+		assertEquals(0, timelineService.rebuildIfEmpty());
+	}
+
+	private List<Long> awaitTimeline(long userId, int size) throws InterruptedException {
+		// The timeline is filled asynchronously after the posts are committed
+		for (int attempt = 0; attempt < 100; attempt++) {
+			List<Long> ids = ids(timelineService.getTimeline(userId, 0, 10));
+			if (ids.size() == size) {
+				return ids;
+			}
+			Thread.sleep(50);
+		}
+		return fail("The timeline has not been filled");
+	}
+
+	private static List<Long> ids(List<PostDto> posts) {
+		return posts.stream().map(PostDto::getId).toList();
+	}
+}
@@ -0,0 +1,49 @@
+package ru.effectivemobile.socialmedia.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+	@Test
+	void addContainsRemove() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(7));
+		assertTrue(set.remove(42));
+		assertFalse(set.remove(42));
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	void rejectsZero() {
+		assertThrows(IllegalArgumentException.class, () -> new LongHashSet().add(0));
+	}
+
+	@Test
+	void matchesHashSetUnderRandomOperations() {
+		Random random = new Random(1);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 200_000; i++) {
+			long value = 1 + random.nextInt(5_000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(value), set.remove(value));
+			} else {
+				assertEquals(expected.add(value), set.add(value));
+			}
+		}
+		assertEquals(expected.size(), set.size());
+		for (long value = 1; value <= 5_000; value++) {
+			assertEquals(expected.contains(value), set.contains(value));
+		}
+		assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), set.toSortedArray());
+	}
+}
@@ -0,0 +1,48 @@
+package ru.effectivemobile.socialmedia.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeTest {
+
+	@Test
+	void idsIncreaseAndCarryNodeAndTime() {
+		Snowflake snowflake = new Snowflake(513);
+		long before = System.currentTimeMillis();
+		long previous = 0;
+		// More ids than fit into one millisecond
+		for (int i = 0; i < 20_000; i++) {
+			long id = snowflake.nextId();
+			assertTrue(id > previous);
+			assertEquals(513, Snowflake.nodeOf(id));
+			previous = id;
+		}
+		assertTrue(Snowflake.timestampOf(previous) >= before);
+	}
+
+	@Test
+	void idsAreUniqueAcrossThreads() {
+		Snowflake snowflake = new Snowflake(1);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		IntStream.range(0, 8).parallel().forEach(thread -> {
+			Set<Long> local = new HashSet<>();
+			for (int i = 0; i < 10_000; i++) {
+				local.add(snowflake.nextId());
+			}
+			ids.addAll(local);
+		});
+		assertEquals(80_000, ids.size());
+	}
+
+	@Test
+	void rejectsInvalidNode() {
+		assertThrows(IllegalArgumentException.class, () -> new Snowflake(-1));
+		assertThrows(IllegalArgumentException.class, () -> new Snowflake(Snowflake.MAX_NODE_ID + 1));
+	}
+}
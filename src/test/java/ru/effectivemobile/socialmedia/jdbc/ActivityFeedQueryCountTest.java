@@ -0,0 +1,70 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.effectivemobile.socialmedia.jdbc.QueryCountAssertions.assertQueryCount;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActivityFeedQueryCountTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void activityFeedQueryBudget() throws Throwable {
+		int authors = 4;
+		String reader = api.signUp("feedreader");
+		for (int author = 0; author < authors; author++) {
+			String name = api.signUp("feedauthor" + author);
+			api.call(get("/api/user/" + reader + "/" + name + "/invite"), reader);
+			api.call(get("/api/user/" + name + "/" + reader + "/accept"), name);
+			for (int n = 0; n < 3; n++) {
+				api.call(post("/api/posts/" + name + "/save").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"header\":\"Post " + n + "\",\"text\":\"Post of " + name + "\"}"), name);
+			}
+		}
+		api.awaitFeedSize(reader, 12);
+
+		// The reader comes from the second-level cache, the posts of the followees from the recent posts cache
+		assertQueryCount(0, () -> api.call(get("/api/posts/" + reader + "/activityfeed?after=&size=20"), reader));
+
+		// Unchanged feed revalidated with its ETag: answered before any query
+		String etag = api.call(get("/api/posts/" + reader + "/activityfeed?after=&size=20"), reader)
+				.getResponse().getHeader("ETag");
+		assertQueryCount(0, () -> mvc.perform(get("/api/posts/" + reader + "/activityfeed?after=&size=20")
+				.header("Authorization", "Bearer " + api.token(reader))
+				.header("If-None-Match", etag)).andExpect(status().isNotModified()));
+
+		api.call(post("/api/posts/feedauthor0/save").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"header\":\"New post\",\"text\":\"Post of feedauthor0\"}"), "feedauthor0");
+		mvc.perform(get("/api/posts/" + reader + "/activityfeed?after=&size=20")
+				.header("Authorization", "Bearer " + api.token(reader))
+				.header("If-None-Match", etag)).andExpect(status().isOk());
+	}
+}
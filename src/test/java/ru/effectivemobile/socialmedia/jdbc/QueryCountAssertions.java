@@ -0,0 +1,32 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Assertions on the number of statements executed by a piece of code, to pin the query budget
+ * of an endpoint or a service method. The code has to run on the calling thread
+ * (MockMvc does, a real HTTP client does not).
+ */
+public final class QueryCountAssertions {
+
+	private QueryCountAssertions() {
+	}
+
+	public static QueryStats assertQueryCount(int expected, Executable action) throws Throwable {
+		QueryStats stats = QueryStats.start("test");
+		try {
+			action.execute();
+		} finally {
+			stats.stop();
+		}
+		assertEquals(expected, stats.getStatements(), () -> "Unexpected number of statements, executed:\n"
+				+ stats.getShapes().entrySet().stream()
+				.map(shape -> shape.getValue() + " x " + shape.getKey())
+				.collect(Collectors.joining("\n")));
+		return stats;
+	}
+}
@@ -0,0 +1,93 @@
+package ru.effectivemobile.socialmedia.jdbc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.effectivemobile.socialmedia.model.ERole;
+import ru.effectivemobile.socialmedia.model.Role;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Users signed up through the API and calls made on their behalf with MockMvc, for the integration tests.
+ */
+public class TestApi {
+	public static final String PASSWORD = "test-password";
+
+	private final MockMvc mvc;
+	private final ObjectMapper objectMapper;
+	private final Map<String, String> tokens = new HashMap<>();
+
+	public TestApi(MockMvc mvc, ObjectMapper objectMapper) {
+		this.mvc = mvc;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Creates the role given to the users on sign up, once per database.
+	 */
+	public static void ensureUserRole(RoleRepository roleRepository) {
+		if (roleRepository.findByName(ERole.ROLE_USER).isEmpty()) {
+			Role role = new Role();
+			role.setName(ERole.ROLE_USER);
+			roleRepository.save(role);
+		}
+	}
+
+	/**
+	 * Signs the user up and in, and keeps the token for the calls on their behalf.
+	 */
+	public String signUp(String username) throws Exception {
+		call(post("/api/auth/signup").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"username\":\"" + username + "\",\"email\":\"" + username
+						+ "@test.io\",\"password\":\"" + PASSWORD + "\"}"), null);
+		MvcResult result = call(post("/api/auth/signin").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}"), null);
+		tokens.put(username, objectMapper.readTree(result.getResponse().getContentAsString()).get("token").asText());
+		return username;
+	}
+
+	public String token(String username) {
+		return tokens.get(username);
+	}
+
+	/**
+	 * Performs the request as the user, anonymously for {@code null}, and expects 200.
+	 */
+	public MvcResult call(MockHttpServletRequestBuilder request, String username) throws Exception {
+		if (username != null) {
+			request.header("Authorization", "Bearer " + tokens.get(username));
+		}
+		return mvc.perform(request).andExpect(status().isOk()).andReturn();
+	}
+
+	public JsonNode json(MockHttpServletRequestBuilder request, String username) throws Exception {
+		return objectMapper.readTree(call(request, username).getResponse().getContentAsString());
+	}
+
+	/**
+	 * Waits for the first page of the activity feed of the user to have {@code size} posts, and returns them.
+	 */
+	public JsonNode awaitFeedSize(String username, int size) throws Exception {
+		// The timeline is filled asynchronously after the posts are committed
+		for (int attempt = 0; attempt < 100; attempt++) {
+			JsonNode items = json(get("/api/posts/" + username + "/activityfeed?after=&size=20"), username)
+					.get("items");
+			if (items.size() == size) {
+				return items;
+			}
+			Thread.sleep(50);
+		}
+		return fail("The timeline has not been filled");
+	}
+}
@@ -0,0 +1,84 @@
+package ru.effectivemobile.socialmedia.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Latencies of one endpoint. Every sample is kept, so the percentiles are exact.
+ */
+final class LatencyRecorder {
+	private final String name;
+	// Recorded by thousands of virtual client threads, which must not pin their carriers on a monitor
+	private final ReentrantLock lock = new ReentrantLock();
+	private long[] samples = new long[1024];
+	private int count;
+	private int errors;
+
+	LatencyRecorder(String name) {
+		this.name = name;
+	}
+
+	void record(long nanos, boolean success) {
+		lock.lock();
+		try {
+			if (count == samples.length) {
+				samples = Arrays.copyOf(samples, count * 2);
+			}
+			samples[count++] = nanos;
+			if (!success) {
+				errors++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int count() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int errors() {
+		lock.lock();
+		try {
+			return errors;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	String report(double seconds) {
+		lock.lock();
+		try {
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			return String.format("%-10s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f",
+					name, count, errors, count / seconds,
+					millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.95)),
+					millis(percentile(sorted, 0.99)), millis(count == 0 ? 0 : sorted[count - 1]));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	static String header() {
+		return String.format("%-10s %8s %7s %9s %9s %9s %9s %9s",
+				"endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+	}
+
+	private static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
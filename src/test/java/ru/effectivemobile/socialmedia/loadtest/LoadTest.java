@@ -0,0 +1,330 @@
+package ru.effectivemobile.socialmedia.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import ru.effectivemobile.socialmedia.model.ERole;
+import ru.effectivemobile.socialmedia.model.Role;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the application over HTTP against the embedded database and reports the throughput
+ * and the latency percentiles per endpoint. Runs only in the loadtest profile:
+ * <pre>
+ * mvn -Ploadtest test -Dloadtest.users=200 -Dloadtest.threads=32 -Dloadtest.duration=60
+ * </pre>
+ * Every client runs on its own virtual thread, so thousands of them do not exhaust the test JVM.
+ * The activity feed at 2000 clients, with the server on the Tomcat pool and then on virtual threads:
+ * <pre>
+ * mvn -Ploadtest test -Dloadtest.threads=2000 -Dloadtest.mix=feed:100 -Dapp.threads.virtual=false
+ * mvn -Ploadtest test -Dloadtest.threads=2000 -Dloadtest.mix=feed:100 -Dapp.threads.virtual=true
+ * </pre>
+ * Parameters (system properties):
+ * <ul>
+ *     <li>{@code loadtest.users}: number of seeded users (100)</li>
+ *     <li>{@code loadtest.friends}: friends of every seeded user (5)</li>
+ *     <li>{@code loadtest.posts}: posts of every seeded user (5)</li>
+ *     <li>{@code loadtest.threads}: concurrent clients (16)</li>
+ *     <li>{@code loadtest.warmup}: seconds of unmeasured load before the measurement (5)</li>
+ *     <li>{@code loadtest.duration}: seconds of measured load (30)</li>
+ *     <li>{@code loadtest.mix}: relative weights of the scenarios
+ *     ({@code feed:40,post:15,message:25,invite:10,signin:10})</li>
+ *     <li>{@code loadtest.seed}: random seed (42)</li>
+ * </ul>
+ * The report is logged and written to {@code target/loadtest/report.txt}.
+ * The test fails if any request ends with a server error.
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@Slf4j
+class LoadTest {
+	private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+	private static final String PASSWORD = "loadtest-password";
+
+	private final int users = Integer.getInteger("loadtest.users", 100);
+	private final int friendsPerUser = Integer.getInteger("loadtest.friends", 5);
+	private final int postsPerUser = Integer.getInteger("loadtest.posts", 5);
+	private final int threads = Integer.getInteger("loadtest.threads", 16);
+	private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 5);
+	private final int durationSeconds = Integer.getInteger("loadtest.duration", 30);
+	private final String mix = System.getProperty("loadtest.mix", "feed:40,post:15,message:25,invite:10,signin:10");
+	private final long seed = Long.getLong("loadtest.seed", 42L);
+
+	@LocalServerPort
+	private int port;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Value("${app.threads.virtual}")
+	private boolean virtualThreads;
+
+	private final HttpClient http = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+	private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+	private final AtomicInteger serverErrors = new AtomicInteger();
+	private volatile boolean measuring;
+	private double seedSeconds;
+
+	private String[] tokens;
+	private List<List<Integer>> friends;
+	private List<int[]> strangers;
+	private final AtomicInteger nextStrangers = new AtomicInteger();
+
+	@Test
+	void load() throws Exception {
+		for (String name : List.of("signup", "signin", "post", "feed", "message", "invite", "accept")) {
+			recorders.put(name, new LatencyRecorder(name));
+		}
+		Role role = new Role();
+		role.setName(ERole.ROLE_USER);
+		roleRepository.save(role);
+
+		measuring = true;
+		long seedStart = System.nanoTime();
+		seed(new SplittableRandom(seed));
+		seedSeconds = (System.nanoTime() - seedStart) / 1e9;
+		log.info("Seeded {} users in {} s", users, seedSeconds);
+
+		Scenario[] scenarios = parseMix();
+		measuring = false;
+		runFor(scenarios, warmupSeconds);
+		recorders.forEach((name, recorder) -> {
+			if (!name.equals("signup")) {
+				recorders.put(name, new LatencyRecorder(name));
+			}
+		});
+		measuring = true;
+		long start = System.nanoTime();
+		runFor(scenarios, durationSeconds);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		report(seconds);
+		assertEquals(0, serverErrors.get(), "Requests failed with a server error");
+	}
+
+	private void seed(SplittableRandom random) throws Exception {
+		tokens = new String[users];
+		friends = new ArrayList<>();
+		for (int user = 0; user < users; user++) {
+			call("signup", "POST", "/api/auth/signup", null,
+					"{\"username\":\"" + username(user) + "\",\"email\":\"" + username(user) +
+							"@loadtest.io\",\"password\":\"" + PASSWORD + "\"}");
+			tokens[user] = signIn(user);
+			friends.add(new CopyOnWriteArrayList<>());
+		}
+		boolean[][] related = new boolean[users][users];
+		for (int user = 0; user < users; user++) {
+			for (int i = 0; i < friendsPerUser; i++) {
+				int other = random.nextInt(users);
+				if (other != user && !related[user][other]) {
+					befriend(user, other);
+					related[user][other] = true;
+					related[other][user] = true;
+				}
+			}
+			for (int i = 0; i < postsPerUser; i++) {
+				savePost(user, i);
+			}
+		}
+		// Pairs left for the invite scenario, in random order
+		strangers = new ArrayList<>();
+		for (int user = 0; user < users; user++) {
+			for (int other = user + 1; other < users; other++) {
+				if (!related[user][other]) {
+					strangers.add(new int[]{user, other});
+				}
+			}
+		}
+		for (int i = strangers.size() - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int[] pair = strangers.get(i);
+			strangers.set(i, strangers.get(j));
+			strangers.set(j, pair);
+		}
+	}
+
+	private void runFor(Scenario[] scenarios, int seconds) throws Exception {
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int thread = 0; thread < threads; thread++) {
+				SplittableRandom random = new SplittableRandom(seed + thread + 1);
+				workers.add(executor.submit(() -> {
+					while (System.nanoTime() < deadline) {
+						pick(scenarios, random).run(random);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Scenario[] parseMix() {
+		List<Scenario> scenarios = new ArrayList<>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			Action action = switch (parts[0]) {
+				case "feed" -> random -> {
+					int user = random.nextInt(users);
+					call("feed", "GET", "/api/posts/" + username(user) + "/activityfeed?after=&size=20", user, null);
+				};
+				case "post" -> random -> savePost(random.nextInt(users), random.nextInt());
+				case "message" -> this::sendMessage;
+				case "invite" -> random -> inviteStranger();
+				case "signin" -> random -> signIn(random.nextInt(users));
+				default -> throw new IllegalArgumentException("Unknown scenario: " + parts[0]);
+			};
+			int weight = Integer.parseInt(parts[1]);
+			for (int i = 0; i < weight; i++) {
+				scenarios.add(new Scenario(action));
+			}
+		}
+		return scenarios.toArray(new Scenario[0]);
+	}
+
+	private static Scenario pick(Scenario[] scenarios, SplittableRandom random) {
+		return scenarios[random.nextInt(scenarios.length)];
+	}
+
+	private String signIn(int user) throws Exception {
+		String body = call("signin", "POST", "/api/auth/signin", null,
+				"{\"username\":\"" + username(user) + "\",\"password\":\"" + PASSWORD + "\"}");
+		Matcher matcher = TOKEN.matcher(body);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	private void savePost(int user, int n) throws Exception {
+		call("post", "POST", "/api/posts/" + username(user) + "/save", user,
+				"{\"header\":\"Post " + n + "\",\"text\":\"Load test post " + n + " of " + username(user) + "\"}");
+	}
+
+	private void sendMessage(SplittableRandom random) throws Exception {
+		int sender = random.nextInt(users);
+		List<Integer> senderFriends = friends.get(sender);
+		if (senderFriends.isEmpty()) {
+			return;
+		}
+		int recipient = senderFriends.get(random.nextInt(senderFriends.size()));
+		call("message", "POST", "/api/messages/" + username(sender) + "/" + username(recipient) + "/send", sender,
+				"{\"text\":\"Hello from " + username(sender) + "\"}");
+	}
+
+	private void inviteStranger() throws Exception {
+		int index = nextStrangers.getAndIncrement();
+		if (index < strangers.size()) {
+			int[] pair = strangers.get(index);
+			befriend(pair[0], pair[1]);
+		}
+	}
+
+	private void befriend(int sender, int recipient) throws Exception {
+		call("invite", "GET", "/api/user/" + username(sender) + "/" + username(recipient) + "/invite", sender, null);
+		call("accept", "GET", "/api/user/" + username(recipient) + "/" + username(sender) + "/accept", recipient, null);
+		friends.get(sender).add(recipient);
+		friends.get(recipient).add(sender);
+	}
+
+	private String call(String endpoint, String method, String path, Integer user, String body) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.timeout(Duration.ofSeconds(30))
+				.method(method, body == null
+						? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofString(body));
+		if (body != null) {
+			request.header("Content-Type", "application/json");
+		}
+		if (user != null && tokens[user] != null) {
+			request.header("Authorization", "Bearer " + tokens[user]);
+		}
+		long start = System.nanoTime();
+		int status;
+		String responseBody;
+		try {
+			HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+			status = response.statusCode();
+			responseBody = response.body();
+		} catch (IOException e) {
+			status = 599;
+			responseBody = "";
+		}
+		long elapsed = System.nanoTime() - start;
+		if (status >= 500) {
+			serverErrors.incrementAndGet();
+			log.warn("{} {} failed with status {}: {}", method, path, status, responseBody);
+		}
+		if (measuring) {
+			recorders.get(endpoint).record(elapsed, status < 400);
+		}
+		return responseBody;
+	}
+
+	private void report(double seconds) throws IOException {
+		StringBuilder report = new StringBuilder()
+				.append(String.format("Load test: %d users, %d threads, %.1f s measured, mix %s, server on %s threads%n",
+						users, threads, seconds, mix, virtualThreads ? "virtual" : "platform"))
+				.append(LatencyRecorder.header()).append(System.lineSeparator());
+		int total = 0;
+		for (LatencyRecorder recorder : recorders.values()) {
+			// Sign-ups only happen while seeding
+			boolean seeding = recorder == recorders.get("signup");
+			report.append(recorder.report(seeding ? seedSeconds : seconds)).append(System.lineSeparator());
+			total += seeding ? 0 : recorder.count();
+		}
+		report.append(String.format("Total: %.1f req/s, %d server errors%n", total / seconds, serverErrors.get()));
+		log.info("\n{}", report);
+		Path file = Path.of("target", "loadtest", "report.txt");
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, report);
+	}
+
+	private static String username(int user) {
+		return "user" + user;
+	}
+
+	@FunctionalInterface
+	private interface Action {
+		void run(SplittableRandom random) throws Exception;
+	}
+
+	private record Scenario(Action action) {
+		void run(SplittableRandom random) throws Exception {
+			action.run(random);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package ru.effectivemobile.socialmedia.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Writes through the servlet API, reads the same embedded database through the reactive API.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:reactive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;" +
+				"DB_CLOSE_DELAY=-1",
+		"app.reactive.port=0",
+		"app.reactive.r2dbc.url=r2dbc:h2:mem:///reactive?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;" +
+				"NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1"})
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "reactive"})
+class ReactiveReadApiTest {
+	private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> EVENT =
+			new ParameterizedTypeReference<>() {
+			};
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private ReactiveApiServer reactiveApiServer;
+
+	private TestApi api;
+	private WebTestClient client;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+		client = WebTestClient.bindToServer().baseUrl("http://localhost:" + reactiveApiServer.getPort()).build();
+	}
+
+	@Test
+	void streamsTheListingsOfTheServletApi() throws Exception {
+		String reader = api.signUp("streamreader");
+		for (int author = 0; author < 2; author++) {
+			String name = api.signUp("streamauthor" + author);
+			api.call(get("/api/user/" + reader + "/" + name + "/invite"), reader);
+			api.call(get("/api/user/" + name + "/" + reader + "/accept"), name);
+			for (int n = 0; n < 3; n++) {
+				api.call(post("/api/posts/" + name + "/save").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"header\":\"Post " + n + "\",\"text\":\"Post of " + name + "\"}"), name);
+			}
+			api.call(post("/api/messages/" + name + "/" + reader + "/send").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"text\":\"Hello from " + name + "\"}"), name);
+		}
+
+		JsonNode servletFeed = api.awaitFeedSize(reader, 6);
+		List<JsonNode> feed = feed(reader);
+		assertEquals(servletFeed.findValuesAsText("id"), ids(feed));
+		assertEquals(servletFeed.get(0), feed.get(0));
+		// The 64-bit ids are written as strings, exact in JavaScript clients
+		assertTrue(feed.get(0).get("id").isTextual());
+
+		// Pages of the posts of another user, continued from the id of the last event
+		List<ServerSentEvent<JsonNode>> firstPage = events("/posts/streamauthor0?size=2", reader);
+		List<ServerSentEvent<JsonNode>> secondPage =
+				events("/posts/streamauthor0?size=2&after=" + firstPage.get(1).id(), reader);
+		List<String> posts = new ArrayList<>();
+		firstPage.forEach(event -> posts.add(event.data().get("id").asText()));
+		secondPage.forEach(event -> posts.add(event.data().get("id").asText()));
+		JsonNode servletPosts = api.json(get("/api/posts/streamauthor0?after=&size=4"), reader).get("items");
+		assertEquals(servletPosts.findValuesAsText("id"), posts);
+
+		List<JsonNode> messages = client.get().uri("/api/reactive/messages/" + reader + "/received")
+				.header("Authorization", "Bearer " + api.token(reader))
+				.exchange().expectStatus().isOk()
+				.returnResult(JsonNode.class).getResponseBody().collectList().block();
+		assertEquals(List.of("Hello from streamauthor1", "Hello from streamauthor0"),
+				messages.stream().map(message -> message.get("text").asText()).toList());
+	}
+
+	@Test
+	void rejectsUnauthorizedRequests() throws Exception {
+		String owner = api.signUp("streamowner");
+		String other = api.signUp("streamother");
+		client.get().uri("/api/reactive/posts/" + owner).exchange().expectStatus().isUnauthorized();
+		client.get().uri("/api/reactive/posts/" + owner)
+				.header("Authorization", "Bearer " + api.token(owner) + "x")
+				.exchange().expectStatus().isUnauthorized();
+		client.get().uri("/api/reactive/messages/" + owner + "/received")
+				.header("Authorization", "Bearer " + api.token(other))
+				.exchange().expectStatus().isForbidden();
+		client.get().uri("/api/reactive/posts/" + owner + "?after=invalid")
+				.header("Authorization", "Bearer " + api.token(owner))
+				.exchange().expectStatus().isBadRequest();
+		client.get().uri("/api/reactive/posts/unknown-user")
+				.header("Authorization", "Bearer " + api.token(owner))
+				.exchange().expectStatus().isBadRequest();
+	}
+
+	private List<JsonNode> feed(String username) {
+		return client.get().uri("/api/reactive/posts/" + username + "/activityfeed?size=20")
+				.header("Authorization", "Bearer " + api.token(username))
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange().expectStatus().isOk()
+				.returnResult(JsonNode.class).getResponseBody().collectList().block();
+	}
+
+	private List<ServerSentEvent<JsonNode>> events(String path, String username) {
+		return client.get().uri("/api/reactive" + path)
+				.header("Authorization", "Bearer " + api.token(username))
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.exchange().expectStatus().isOk()
+				.returnResult(EVENT).getResponseBody().collectList().block();
+	}
+
+	private static List<String> ids(List<JsonNode> items) {
+		return items.stream().map(item -> item.get("id").asText()).toList();
+	}
+}
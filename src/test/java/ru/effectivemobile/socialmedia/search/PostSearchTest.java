@@ -0,0 +1,128 @@
+package ru.effectivemobile.socialmedia.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+import ru.effectivemobile.socialmedia.service.PostSearchService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PostSearchTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private PostSearchService postSearchService;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void searchesRanksFiltersAndPages() throws Exception {
+		String first = api.signUp("searchfirst");
+		String second = api.signUp("searchsecond");
+		long inText = save(first, "Weekend", "Climbing the glacier with friends");
+		long inHeader = save(second, "Glacier", "A long walk");
+		Instant between = Instant.now();
+		Thread.sleep(5);
+		long later = save(first, "Glacier glacier", "Glacier lake at dawn");
+		save(second, "Unrelated", "Nothing to see");
+
+		assertEquals(List.of(later, inHeader, inText), awaitIds("/api/search/posts?q=glacier", first, 3));
+		assertEquals(List.of(later, inText), ids(search("/api/search/posts?q=glacier&author=" + first, first)));
+		assertEquals(List.of(inHeader, inText),
+				ids(search("/api/search/posts?q=glacier&to=" + between, first)));
+		assertEquals(List.of(later), ids(search("/api/search/posts?q=glacier -climbing&from=" + between, first)));
+		assertEquals(List.of(later), ids(search("/api/search/posts?q=\"lake at dawn\"", first)));
+
+		// Cursor paging walks the same ranking
+		List<Long> paged = new ArrayList<>();
+		String cursor = "";
+		do {
+			JsonNode page = search("/api/search/posts?q=glacier&size=2&after=" + cursor, first);
+			paged.addAll(ids(page));
+			cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+		} while (cursor != null);
+		assertEquals(List.of(later, inHeader, inText), paged);
+
+		api.call(delete("/api/posts/" + first + "/remove/" + later), first);
+		assertEquals(List.of(inHeader, inText), awaitIds("/api/search/posts?q=glacier", first, 2));
+
+		assertTrue(postSearchService.rebuild(2, 1) >= 3);
+		assertEquals(List.of(inHeader, inText), ids(search("/api/search/posts?q=glacier", first)));
+
+		mvc.perform(get("/api/search/posts").param("q", " ").header("Authorization", "Bearer " + api.token(first)))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/search/posts?q=glacier&author=unknown-user")
+						.header("Authorization", "Bearer " + api.token(first)))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void leavesThePostsPathToAUserNamedSearch() throws Exception {
+		String user = api.signUp("search");
+		long id = save(user, "Mine", "Posted by the user named search");
+
+		JsonNode posts = api.json(get("/api/posts/" + user), user);
+		assertEquals(1, posts.size());
+		assertEquals(id, posts.get(0).get("id").asLong());
+	}
+
+	private List<Long> awaitIds(String path, String username, int size) throws Exception {
+		// Changes become searchable at the next refresh of the index
+		for (int attempt = 0; attempt < 100; attempt++) {
+			List<Long> ids = ids(search(path, username));
+			if (ids.size() == size) {
+				return ids;
+			}
+			Thread.sleep(50);
+		}
+		return fail("The index has not been refreshed");
+	}
+
+	private JsonNode search(String path, String username) throws Exception {
+		return api.json(get(path), username);
+	}
+
+	private static List<Long> ids(JsonNode page) {
+		List<Long> ids = new ArrayList<>();
+		page.get("items").forEach(item -> ids.add(item.get("id").asLong()));
+		return ids;
+	}
+
+	private long save(String username, String header, String text) throws Exception {
+		return api.json(post("/api/posts/" + username + "/save").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"header\":\"" + header + "\",\"text\":\"" + text + "\"}"), username).get("id").asLong();
+	}
+}
@@ -0,0 +1,80 @@
+package ru.effectivemobile.socialmedia.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.web.dto.UserSuggestionDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UsernameIndexTest {
+
+	@Test
+	void findsPendingAndMergedUsersIgnoringCase() {
+		SocialGraphIndex graph = new SocialGraphIndex(new DriverManagerDataSource());
+		UsernameIndex index = new UsernameIndex(new DriverManagerDataSource(), graph);
+		index.add(1, "alice");
+		index.add(2, "Alex");
+		index.add(3, "bob");
+		index.add(4, "ALI");
+		graph.addFollow(3, 2);
+		graph.addFollow(1, 2);
+		graph.addFollow(3, 4);
+
+		assertEquals(List.of("Alex", "ALI", "alice"), usernames(index.search("al", 10)));
+		index.merge();
+		assertEquals(List.of("Alex", "ALI", "alice"), usernames(index.search("AL", 10)));
+		index.add(5, "alibaba");
+		assertEquals(List.of("ALI", "alibaba", "alice"), usernames(index.search("ali", 10)));
+		assertEquals(List.of("ALI"), usernames(index.search("ali", 1)));
+		assertEquals(List.of(), index.search("carol", 10));
+		assertEquals(5, index.size());
+	}
+
+	@Test
+	void ranksBroadPrefixesByFollowers() {
+		Random random = new Random(1);
+		SocialGraphIndex graph = new SocialGraphIndex(new DriverManagerDataSource());
+		UsernameIndex index = new UsernameIndex(new DriverManagerDataSource(), graph);
+		List<String> names = new ArrayList<>();
+		int users = 4 * UsernameIndex.SCAN_LIMIT;
+		for (int id = 1; id <= users; id++) {
+			String name = (char) ('a' + random.nextInt(2)) + Integer.toString(id, 36);
+			names.add(name);
+			index.add(id, name);
+			for (int follower = 0; follower < id % 97; follower++) {
+				graph.addFollow(users + follower + 1, id);
+			}
+		}
+		index.merge();
+
+		List<UserSuggestionDto> top = index.search("a", 20);
+		List<UserSuggestionDto> expected = new ArrayList<>();
+		for (int id = 1; id <= users; id++) {
+			if (names.get(id - 1).startsWith("a")) {
+				expected.add(new UserSuggestionDto(id, names.get(id - 1), graph.followerCount(id)));
+			}
+		}
+		assertTrue(expected.size() > UsernameIndex.SCAN_LIMIT);
+		expected.sort(Comparator.comparingInt(UserSuggestionDto::getFollowers).reversed()
+				.thenComparing(UserSuggestionDto::getUsername));
+		// Users with equal counts may be cut differently, the counts must match
+		assertEquals(followers(expected.subList(0, 20)), followers(top));
+		top.forEach(user -> assertTrue(user.getUsername().toLowerCase(Locale.ROOT).startsWith("a")));
+	}
+
+	private static List<String> usernames(List<UserSuggestionDto> users) {
+		return users.stream().map(UserSuggestionDto::getUsername).toList();
+	}
+
+	private static List<Integer> followers(List<UserSuggestionDto> users) {
+		return users.stream().map(UserSuggestionDto::getFollowers).toList();
+	}
+}
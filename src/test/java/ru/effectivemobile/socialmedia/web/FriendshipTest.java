@@ -0,0 +1,103 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.graph.SocialGraphIndex;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.model.FollowId;
+import ru.effectivemobile.socialmedia.model.FriendEdgeId;
+import ru.effectivemobile.socialmedia.repository.FollowRepository;
+import ru.effectivemobile.socialmedia.repository.FriendEdgeRepository;
+import ru.effectivemobile.socialmedia.repository.InvitationRepository;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FriendshipTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private InvitationRepository invitationRepository;
+	@Autowired
+	private FriendEdgeRepository friendEdgeRepository;
+	@Autowired
+	private FollowRepository followRepository;
+	@Autowired
+	private SocialGraphIndex socialGraphIndex;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void writesAndRemovesTheEdgesOfAFriendship() throws Exception {
+		String first = api.signUp("edgefirst");
+		String second = api.signUp("edgesecond");
+		long firstId = userRepository.findIdByUsername(first).orElseThrow();
+		long secondId = userRepository.findIdByUsername(second).orElseThrow();
+
+		api.call(get("/api/user/" + first + "/" + second + "/invite"), first);
+		assertTrue(followRepository.existsById(new FollowId(firstId, secondId)));
+		assertFalse(friendEdgeRepository.existsById(new FriendEdgeId(firstId, secondId)));
+
+		api.call(get("/api/user/" + second + "/" + first + "/accept"), second);
+		assertTrue(friendEdgeRepository.existsById(new FriendEdgeId(firstId, secondId)));
+		assertTrue(friendEdgeRepository.existsById(new FriendEdgeId(secondId, firstId)));
+		assertTrue(followRepository.existsById(new FollowId(secondId, firstId)));
+		assertTrue(socialGraphIndex.areFriends(firstId, secondId));
+
+		api.call(delete("/api/user/" + first + "/" + second + "/remove"), first);
+		assertFalse(friendEdgeRepository.existsById(new FriendEdgeId(firstId, secondId)));
+		assertFalse(friendEdgeRepository.existsById(new FriendEdgeId(secondId, firstId)));
+		assertFalse(followRepository.existsById(new FollowId(firstId, secondId)));
+		// The removed friend keeps following the remover
+		assertTrue(followRepository.existsById(new FollowId(secondId, firstId)));
+		assertFalse(socialGraphIndex.areFriends(firstId, secondId));
+	}
+
+	@Test
+	void acceptsMutualInvitations() throws Exception {
+		String first = api.signUp("mutualfirst");
+		String second = api.signUp("mutualsecond");
+		long firstId = userRepository.findIdByUsername(first).orElseThrow();
+		long secondId = userRepository.findIdByUsername(second).orElseThrow();
+		long edges = friendEdgeRepository.count();
+
+		api.call(get("/api/user/" + first + "/" + second + "/invite"), first);
+		api.call(get("/api/user/" + second + "/" + first + "/invite"), second);
+		api.call(get("/api/user/" + second + "/" + first + "/accept"), second);
+		// The invitation of the other way round is accepted by users who are already friends
+		api.call(get("/api/user/" + first + "/" + second + "/accept"), first);
+
+		assertEquals(edges + 2, friendEdgeRepository.count());
+		assertTrue(socialGraphIndex.areFriends(firstId, secondId));
+		assertTrue(invitationRepository.findAll().stream().noneMatch(invitation ->
+				invitation.getSender().getId() == firstId && invitation.getRecipient().getId() == secondId
+						|| invitation.getSender().getId() == secondId && invitation.getRecipient().getId() == firstId));
+	}
+}
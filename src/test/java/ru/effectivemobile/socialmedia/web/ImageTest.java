@@ -0,0 +1,108 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.MultipartConfigElement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ImageTest {
+	private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3, 4, 5, 6, 7, 8};
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private MultipartConfigElement multipartConfig;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void servesTheImageToImageTagsWithoutAToken() throws Exception {
+		String url = postImage("imageowner");
+
+		mvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.IMAGE_PNG))
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andExpect(content().bytes(IMAGE));
+	}
+
+	@Test
+	void answersConditionalAndRangeRequests() throws Exception {
+		String url = postImage("imageranges");
+		String etag = mvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+
+		mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=8-11"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 8-11/" + IMAGE.length))
+				.andExpect(content().bytes(Arrays.copyOfRange(IMAGE, 8, 12)));
+		mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=-4"))
+				.andExpect(status().isPartialContent())
+				.andExpect(content().bytes(Arrays.copyOfRange(IMAGE, IMAGE.length - 4, IMAGE.length)));
+		// Range of an older version of the content: the whole image is sent
+		mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=8-11").header(HttpHeaders.IF_RANGE, "\"other\""))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(IMAGE));
+
+		mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=" + IMAGE.length + "-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + IMAGE.length));
+	}
+
+	@Test
+	void uploadsTheImageWithinTheLimitsOfTheImageSize() throws Exception {
+		String user = api.signUp("imageupload");
+		String url = api.json(multipart("/api/posts/" + user + "/save")
+				.file("image", IMAGE).param("header", "Upload").param("text", "Uploaded image"), user)
+				.get("imageUrl").asText();
+		mvc.perform(get(url)).andExpect(status().isOk()).andExpect(content().bytes(IMAGE));
+
+		// app.storage.max-image-size, and the room for the form fields
+		assertEquals(DataSize.ofMegabytes(10).toBytes(), multipartConfig.getMaxFileSize());
+		assertEquals(DataSize.ofMegabytes(11).toBytes(), multipartConfig.getMaxRequestSize());
+	}
+
+	private String postImage(String username) throws Exception {
+		api.signUp(username);
+		return api.json(post("/api/posts/" + username + "/save").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"header\":\"Image\",\"text\":\"Post with an image\",\"image\":\""
+						+ Base64.getEncoder().encodeToString(IMAGE) + "\"}"), username).get("imageUrl").asText();
+	}
+}
@@ -0,0 +1,77 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class MessageStreamTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void pushesTheReceivedMessagesToTheStream() throws Exception {
+		String reader = api.signUp("streamrecipient");
+		String sender = api.signUp("streamsender");
+		api.call(get("/api/user/" + sender + "/" + reader + "/invite"), sender);
+		api.call(get("/api/user/" + reader + "/" + sender + "/accept"), reader);
+
+		// EventSource cannot set headers: the stream takes the token from the query
+		MvcResult stream = mvc.perform(get("/api/messages/" + reader + "/stream")
+						.param("access_token", api.token(reader)))
+				.andExpect(request().asyncStarted()).andReturn();
+		String id = api.json(post("/api/messages/" + sender + "/" + reader + "/send")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"text\":\"Pushed\"}"), sender).get("id").asText();
+
+		// Written by the writer threads of the stream, the event id before the data
+		for (int attempt = 0; attempt < 100; attempt++) {
+			String events = stream.getResponse().getContentAsString();
+			if (events.contains("\"text\":\"Pushed\"")) {
+				assertTrue(events.contains("id:" + id));
+				return;
+			}
+			Thread.sleep(50);
+		}
+		fail("The message has not been pushed");
+	}
+
+	@Test
+	void takesTheTokenFromTheQueryForTheMessageStreamOnly() throws Exception {
+		String user = api.signUp("querytokenuser");
+		mvc.perform(get("/api/posts/" + user + "/stream").param("access_token", api.token(user)))
+				.andExpect(status().isUnauthorized());
+		mvc.perform(get("/api/messages/" + user + "/received/stream").param("access_token", api.token(user)))
+				.andExpect(status().isUnauthorized());
+	}
+}
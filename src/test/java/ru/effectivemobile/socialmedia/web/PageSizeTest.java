@@ -0,0 +1,67 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PageSizeTest {
+	private static final String[] INVALID_SIZES = {"-1", "0", "101", String.valueOf(Integer.MAX_VALUE)};
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void rejectsACursorPageSizeOutOfRange() throws Exception {
+		String user = api.signUp("pagesizes");
+		for (String path : new String[]{"/api/posts/" + user, "/api/posts/" + user + "/activityfeed",
+				"/api/messages/" + user + "/sent", "/api/messages/" + user + "/received"}) {
+			assertPageSizes(path, user);
+		}
+	}
+
+	@Test
+	void rejectsAConversationPageSizeOutOfRange() throws Exception {
+		String user = api.signUp("pagesizereader");
+		String other = api.signUp("pagesizewriter");
+		assertPageSizes("/api/messages/" + user + "/with/" + other, user);
+	}
+
+	@Test
+	void rejectsASearchPageSizeOutOfRange() throws Exception {
+		assertPageSizes("/api/search/posts?q=anything", api.signUp("pagesizesearch"));
+	}
+
+	private void assertPageSizes(String path, String user) throws Exception {
+		for (String size : INVALID_SIZES) {
+			mvc.perform(get(path).param("after", "").param("size", size)
+							.header("Authorization", "Bearer " + api.token(user)))
+					.andExpect(status().isBadRequest());
+		}
+		api.call(get(path).param("after", "").param("size", "100"), user);
+	}
+}
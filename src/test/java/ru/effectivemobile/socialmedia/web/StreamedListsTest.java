@@ -0,0 +1,145 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.model.Message;
+import ru.effectivemobile.socialmedia.model.User;
+import ru.effectivemobile.socialmedia.repository.MessageRepository;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+import ru.effectivemobile.socialmedia.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StreamedListsTest {
+	// More than one fetch of the repository streams
+	private static final int MESSAGES = 1200;
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private MessageRepository messageRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private RequestMappingHandlerAdapter handlerAdapter;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void streamsFriendsAndMessages() throws Exception {
+		String owner = api.signUp("listowner");
+		List<String> friends = List.of(api.signUp("listfriend0"), api.signUp("listfriend1"));
+		for (String friend : friends) {
+			api.call(get("/api/user/" + owner + "/" + friend + "/invite"), owner);
+			api.call(get("/api/user/" + friend + "/" + owner + "/accept"), friend);
+		}
+		User sender = userRepository.findByUsername(friends.get(0)).orElseThrow();
+		User recipient = userRepository.findByUsername(owner).orElseThrow();
+		List<Message> messages = new ArrayList<>();
+		for (int n = 0; n < MESSAGES; n++) {
+			Message message = new Message();
+			message.setSender(sender);
+			message.setRecipient(recipient);
+			message.setText("Message " + n);
+			messages.add(message);
+		}
+		messageRepository.saveAll(messages);
+
+		JsonNode friendList = stream("/api/user/" + owner + "/friends", owner);
+		assertEquals(friends, friendList.findValuesAsText("username"));
+
+		JsonNode received = stream("/api/messages/" + owner + "/received", owner);
+		assertEquals(MESSAGES, received.size());
+		assertEquals("Message " + (MESSAGES - 1), received.get(0).get("text").asText());
+		assertEquals("Message 0", received.get(MESSAGES - 1).get("text").asText());
+		assertEquals(friends.get(0), received.get(0).get("sender").asText());
+		assertEquals(MESSAGES, stream("/api/messages/" + friends.get(0) + "/sent", friends.get(0)).size());
+		assertEquals(0, stream("/api/messages/" + owner + "/sent", owner).size());
+
+		// Unknown users are rejected before the response is streamed
+		mvc.perform(get("/api/messages/unknown-user/sent").header("Authorization", "Bearer " + api.token(owner)))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void streamsRunOnABoundedPoolOfTheirOwn() throws Exception {
+		String owner = api.signUp("busyowner");
+		ThreadPoolTaskExecutor executor =
+				(ThreadPoolTaskExecutor) ReflectionTestUtils.getField(handlerAdapter, "taskExecutor");
+		assertTrue(executor.getThreadNamePrefix().startsWith("mvc-async-"));
+
+		// Every worker and every place of the queue taken by a stream that does not end
+		CountDownLatch release = new CountDownLatch(1);
+		int busy = executor.getMaxPoolSize() + executor.getQueueCapacity();
+		try {
+			for (int n = 0; n < busy; n++) {
+				executor.execute(() -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			MvcResult result = mvc.perform(get("/api/user/" + owner + "/friends")
+							.header("Authorization", "Bearer " + api.token(owner)))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+			// MockMvc records the results of started tasks only: dispatched as the container does
+			MockHttpServletRequest request = result.getRequest();
+			mvc.perform(servletContext -> {
+				request.setDispatcherType(DispatcherType.ASYNC);
+				request.setAsyncStarted(false);
+				return request;
+			}).andExpect(status().isServiceUnavailable());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private JsonNode stream(String path, String username) throws Exception {
+		MvcResult result = mvc.perform(get(path).header("Authorization", "Bearer " + api.token(username)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String body = mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body);
+	}
+}
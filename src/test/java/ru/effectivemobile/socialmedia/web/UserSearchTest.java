@@ -0,0 +1,47 @@
+package ru.effectivemobile.socialmedia.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.effectivemobile.socialmedia.jdbc.TestApi;
+import ru.effectivemobile.socialmedia.repository.RoleRepository;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserSearchTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private TestApi api;
+
+	@BeforeEach
+	void setUp() {
+		TestApi.ensureUserRole(roleRepository);
+		api = new TestApi(mvc, objectMapper);
+	}
+
+	@Test
+	void rejectsALimitOutOfRange() throws Exception {
+		String user = api.signUp("searchlimits");
+		for (String limit : new String[]{"-1", "0", "51", String.valueOf(Integer.MAX_VALUE)}) {
+			mvc.perform(get("/api/user/search").param("prefix", "search").param("limit", limit)
+							.header("Authorization", "Bearer " + api.token(user)))
+					.andExpect(status().isBadRequest());
+		}
+		api.call(get("/api/user/search").param("prefix", "search").param("limit", "50"), user);
+	}
+}